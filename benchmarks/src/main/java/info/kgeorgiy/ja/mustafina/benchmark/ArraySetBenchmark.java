@@ -0,0 +1,52 @@
+package info.kgeorgiy.ja.mustafina.benchmark;
+
+import info.kgeorgiy.ja.mustafina.arrayset.ArraySet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ArraySetBenchmark {
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private List<Integer> values;
+    private ArraySet<Integer> set;
+    private int probe;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(2022);
+        values = IntStream.range(0, size).map(i -> random.nextInt()).boxed().toList();
+        set = new ArraySet<>(values, Comparator.naturalOrder());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ArraySet<Integer> construct() {
+        return new ArraySet<>(values, Comparator.naturalOrder());
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(values.get(probe++ % size));
+    }
+
+    @Benchmark
+    public SortedSet<Integer> headSet() {
+        return set.headSet(values.get(probe++ % size));
+    }
+
+    @Benchmark
+    public SortedSet<Integer> subSet() {
+        Integer element = values.get(probe++ % size);
+        return set.subSet(element, set.last());
+    }
+}
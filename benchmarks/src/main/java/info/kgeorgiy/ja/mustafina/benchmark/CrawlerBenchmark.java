@@ -0,0 +1,74 @@
+package info.kgeorgiy.ja.mustafina.benchmark;
+
+import info.kgeorgiy.ja.mustafina.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Crawls a synthetic site where every page links to {@code links} pages spread over {@code hosts} hosts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CrawlerBenchmark {
+    private static final int PAGES = 10_000;
+
+    @Param({"2", "4"})
+    public int depth;
+
+    @Param({"1", "8", "64"})
+    public int downloaders;
+
+    @Param({"10"})
+    public int links;
+
+    @Param({"10"})
+    public int hosts;
+
+    @Param({"0", "100000"})
+    public long latencyNanos;
+
+    private WebCrawler crawler;
+
+    @Setup
+    public void setup() {
+        crawler = new WebCrawler(new SyntheticDownloader(), downloaders, 4, Math.max(1, downloaders / hosts));
+    }
+
+    @TearDown
+    public void tearDown() {
+        crawler.close();
+    }
+
+    @Benchmark
+    public Result download() {
+        return crawler.download(url(0), depth);
+    }
+
+    private String url(int page) {
+        return "http://host" + page % hosts + ".example/page" + page;
+    }
+
+    private class SyntheticDownloader implements Downloader {
+        @Override
+        public Document download(String url) {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+            int page = Integer.parseInt(url.substring(url.lastIndexOf("page") + 4));
+            List<String> extracted = IntStream.range(1, links + 1)
+                    .mapToObj(i -> url((int) ((page * 31L + i * 7919L) % PAGES))).toList();
+            return () -> extracted;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package info.kgeorgiy.ja.mustafina.benchmark;
+
+import info.kgeorgiy.ja.mustafina.walk.FileHasher;
+import info.kgeorgiy.ja.mustafina.walk.Hasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileHasherBenchmark {
+    @Param({"1024", "1048576", "67108864"})
+    public int fileSize;
+
+    @Param({"SHA-1", "SHA-256", "crc32c", "xxhash64"})
+    public String algorithm;
+
+    private Path file;
+    private FileHasher hasher;
+
+    @Setup
+    public void setup() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[fileSize];
+        new Random(2022).nextBytes(data);
+        file = Files.write(Files.createTempFile("hash-benchmark", ""), data);
+        hasher = new FileHasher(Hasher.factory(algorithm), null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public String hashFile() {
+        return hasher.hash(file.toString());
+    }
+}
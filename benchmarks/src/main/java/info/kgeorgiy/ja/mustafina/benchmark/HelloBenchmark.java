@@ -0,0 +1,87 @@
+package info.kgeorgiy.ja.mustafina.benchmark;
+
+import info.kgeorgiy.ja.mustafina.hello.HelloUDPNonblockingServer;
+import info.kgeorgiy.ja.mustafina.hello.HelloUDPServer;
+import info.kgeorgiy.java.advanced.hello.HelloServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request-response rate of the UDP servers on localhost. Number of clients is set by JMH {@code -t} option.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HelloBenchmark {
+    private static final int PORT = 28888;
+    private static final int TIME_OUT = 100;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"blocking", "nonblocking"})
+        public String server;
+
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        @Param({"false", "true"})
+        public boolean reusePort;
+
+        private HelloServer instance;
+
+        @Setup
+        public void setup() {
+            instance = server.equals("blocking") ? new HelloUDPServer(reusePort)
+                    : new HelloUDPNonblockingServer(reusePort);
+            instance.start(PORT, threads);
+        }
+
+        @TearDown
+        public void tearDown() {
+            instance.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private DatagramSocket socket;
+        private DatagramPacket request;
+        private DatagramPacket response;
+
+        @Setup
+        public void setup() throws IOException {
+            socket = new DatagramSocket();
+            socket.setSoTimeout(TIME_OUT);
+            byte[] data = ("benchmark_" + Thread.currentThread().getName()).getBytes(StandardCharsets.UTF_8);
+            request = new DatagramPacket(data, data.length, new InetSocketAddress("localhost", PORT));
+            int size = socket.getReceiveBufferSize();
+            response = new DatagramPacket(new byte[size], size);
+        }
+
+        @TearDown
+        public void tearDown() {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public int roundTrip(Server server, Client client) throws IOException {
+        while (true) {
+            client.socket.send(client.request);
+            try {
+                client.socket.receive(client.response);
+                return client.response.getLength();
+            } catch (SocketTimeoutException ignored) {
+            }
+        }
+    }
+}
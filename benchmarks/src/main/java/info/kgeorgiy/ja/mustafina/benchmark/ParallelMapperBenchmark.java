@@ -0,0 +1,67 @@
+package info.kgeorgiy.ja.mustafina.benchmark;
+
+import info.kgeorgiy.ja.mustafina.concurrent.IterativeParallelism;
+import info.kgeorgiy.ja.mustafina.concurrent.ParallelMapperImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParallelMapperBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private ParallelMapperImpl mapper;
+    private IterativeParallelism mapperParallelism;
+    private IterativeParallelism threadParallelism;
+    private List<Integer> values;
+
+    @Setup
+    public void setup() {
+        mapper = new ParallelMapperImpl(threads);
+        mapperParallelism = new IterativeParallelism(mapper);
+        threadParallelism = new IterativeParallelism();
+        values = IntStream.range(0, size).map(i -> (i * 31) % size).boxed().toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mapper.close();
+    }
+
+    @Benchmark
+    public List<Integer> mapCheap() throws InterruptedException {
+        return mapper.map(x -> x + 1, values);
+    }
+
+    @Benchmark
+    public Integer maximumMapper() throws InterruptedException {
+        return mapperParallelism.maximum(threads, values, Comparator.naturalOrder());
+    }
+
+    @Benchmark
+    public Integer maximumThreads() throws InterruptedException {
+        return threadParallelism.maximum(threads, values, Comparator.naturalOrder());
+    }
+
+    @Benchmark
+    public boolean anyMapper() throws InterruptedException {
+        return mapperParallelism.any(threads, values, x -> x < 0);
+    }
+
+    @Benchmark
+    public boolean anyThreads() throws InterruptedException {
+        return threadParallelism.any(threads, values, x -> x < 0);
+    }
+}
@@ -0,0 +1,65 @@
+package info.kgeorgiy.ja.mustafina.benchmark;
+
+import info.kgeorgiy.ja.mustafina.student.StudentDB;
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StudentDBBenchmark {
+    private static final String[] FIRST_NAMES = {"Alina", "Ivan", "Maria", "Petr", "Olga", "Pavel", "Anna", "Oleg"};
+    private static final String[] LAST_NAMES = {"Ivanov", "Petrova", "Sidorov", "Smirnova", "Kuznetsov", "Popova"};
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private final StudentDB db = new StudentDB();
+    private List<Student> students;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(2022);
+        GroupName[] groups = GroupName.values();
+        students = IntStream.range(0, size).mapToObj(i -> new Student(i,
+                FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                groups[random.nextInt(groups.length)])).toList();
+    }
+
+    @Benchmark
+    public List<String> getFullNames() {
+        return db.getFullNames(students);
+    }
+
+    @Benchmark
+    public Set<String> getDistinctFirstNames() {
+        return db.getDistinctFirstNames(students);
+    }
+
+    @Benchmark
+    public List<Student> sortStudentsByName() {
+        return db.sortStudentsByName(students);
+    }
+
+    @Benchmark
+    public List<Student> findStudentsByGroup() {
+        return db.findStudentsByGroup(students, GroupName.values()[0]);
+    }
+
+    @Benchmark
+    public Map<String, String> findStudentNamesByGroup() {
+        return db.findStudentNamesByGroup(students, GroupName.values()[0]);
+    }
+}
@@ -0,0 +1,64 @@
+package info.kgeorgiy.ja.mustafina.benchmark;
+
+import info.kgeorgiy.ja.mustafina.walk.Walk;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WalkBenchmark {
+    private static final int FILES = 256;
+
+    @Param({"1024", "1048576", "67108864"})
+    public int fileSize;
+
+    @Param({"SHA-1", "SHA-256", "crc32c", "xxhash64"})
+    public String algorithm;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path root;
+    private Path input;
+    private Path output;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("walk-benchmark");
+        byte[] data = new byte[fileSize];
+        new Random(2022).nextBytes(data);
+        int files = (int) Math.max(1, Math.min(FILES, (1L << 28) / fileSize));
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < files; i++) {
+            list.append(Files.write(root.resolve("file" + i), data)).append(System.lineSeparator());
+        }
+        input = Files.writeString(root.resolve("input.txt"), list);
+        output = root.resolve("output.txt");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void walk() {
+        Walk.main(new String[]{input.toString(), output.toString(),
+                "-threads", Integer.toString(threads), "-algorithm", algorithm});
+    }
+}
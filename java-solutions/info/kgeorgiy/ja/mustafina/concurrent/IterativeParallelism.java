@@ -1,54 +1,134 @@
 package info.kgeorgiy.ja.mustafina.concurrent;
 
-import info.kgeorgiy.java.advanced.concurrent.ScalarIP;
+import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
-import java.util.function.Function;
-import java.util.function.Predicate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-public class IterativeParallelism implements ScalarIP {
+/**
+ * Parallel list operations. Chunks are run either by the given {@link ParallelMapper}
+ * or by a shared pool of daemon threads, which are reused between calls; with the pool,
+ * the first chunk is run by the calling thread.
+ */
+public class IterativeParallelism implements ListIP {
+    private static final int CHECK_INTERVAL = 64;
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ExecutorService PLATFORM_POOL = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "iterative-parallelism-" + THREADS.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
     private final ParallelMapper parallelMapper;
+    private final ExecutorService executor;
 
     public IterativeParallelism(final ParallelMapper parallelMapper) {
         this.parallelMapper = parallelMapper;
+        this.executor = null;
     }
 
     public IterativeParallelism() {
+        this(PLATFORM_POOL);
+    }
+
+    private IterativeParallelism(final ExecutorService executor) {
         this.parallelMapper = null;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns instance which runs every chunk in a new virtual thread,
+     * so {@code threads} may be large for blocking predicates and comparators.
+     */
+    public static IterativeParallelism ofVirtualThreads() {
+        return new IterativeParallelism(VirtualPool.POOL);
+    }
+
+    /**
+     * Holds the virtual thread pool, created on first use of {@link #ofVirtualThreads()}.
+     */
+    private static final class VirtualPool {
+        private static final ExecutorService POOL = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    private record Chunk<T>(int from, List<? extends T> values) {
+    }
+
+    private static int chunks(final int threads, final int size) {
+        return Math.min(Math.max(threads, 1), size);
     }
 
-    private <T> List<List<? extends T>> splitValues(final int threads, final List<? extends T> values) {
-        final int len = values.size() / threads;
-        final int mod = values.size() % threads;
-        int left = 0;
-        int right;
-        List<List<? extends T>> list = new ArrayList<>();
-        for (int i = 0; i < Math.min(threads, values.size()); i++) {
-            right = i < mod ? left + len + 1 : left + len;
-            list.add(values.subList(left, right));
-            left = right;
+    /**
+     * Returns start of {@code i}-th of {@code chunks} chunks of {@code size} elements.
+     */
+    private static int bound(final int i, final int chunks, final int size) {
+        return i * (size / chunks) + Math.min(i, size % chunks);
+    }
+
+    private <T> List<Chunk<T>> splitValues(final int threads, final List<? extends T> values) {
+        final int chunks = chunks(threads, values.size());
+        List<Chunk<T>> list = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            final int left = bound(i, chunks, values.size());
+            list.add(new Chunk<>(left, values.subList(left, bound(i + 1, chunks, values.size()))));
         }
         return list;
     }
 
     private <T, R> List<R> parallel(final int threads, final List<? extends T> values, final Function<List<? extends T>, ? extends R> function)
             throws InterruptedException {
-        List<List<? extends T>> list = splitValues(threads, values);
-        if (parallelMapper == null) {
-            final List<R> result = new ArrayList<>(Collections.nCopies(list.size(), null));
-            List<Thread> action = new ArrayList<>();
-            for (int i = 0; i < list.size(); i++) {
+        return parallelChunks(threads, values, chunk -> function.apply(chunk.values()));
+    }
+
+    private <T, R> List<R> parallelChunks(final int threads, final List<? extends T> values, final Function<Chunk<T>, ? extends R> function)
+            throws InterruptedException {
+        final List<Chunk<T>> list = splitValues(threads, values);
+        final List<R> result = new ArrayList<>(Collections.nCopies(list.size(), null));
+        run(list.size(), i -> result.set(i, function.apply(list.get(i))));
+        return result;
+    }
+
+    /**
+     * Runs {@code task} for chunks {@code 0 .. chunks - 1} in parallel.
+     */
+    private void run(final int chunks, final IntConsumer task) throws InterruptedException {
+        if (parallelMapper != null) {
+            parallelMapper.map(i -> {
+                task.accept(i);
+                return null;
+            }, IntStream.range(0, chunks).boxed().toList());
+            return;
+        }
+        final List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 1; i < chunks; i++) {
                 final int ind = i;
-                action.add(new Thread(() -> result.set(ind, function.apply(list.get(ind)))));
+                futures.add(executor.submit(() -> task.accept(ind)));
             }
-            action = action.stream().peek(Thread::start).toList();
-            for (Thread a : action) {
-                a.join();
+            if (chunks > 0) {
+                task.accept(0);
             }
-            return result;
-        } else {
-            return parallelMapper.map(function, list);
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
         }
     }
 
@@ -98,12 +178,32 @@ public class IterativeParallelism implements ScalarIP {
     @Override
     public <T> boolean all(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
         if (threads > 0) {
-            final List<Boolean> res = parallel(threads, values, list -> list.stream().allMatch(predicate));
-            return !res.contains(false);
+            final AtomicBoolean failed = new AtomicBoolean();
+            parallel(threads, values, list -> allMatch(list, predicate, failed));
+            return !failed.get();
         }
         return values.stream().allMatch(predicate);
     }
 
+    /**
+     * Tests {@code values} until a counterexample is found here or in another chunk, which is
+     * announced through {@code failed}. Other chunks stop within {@code CHECK_INTERVAL} elements.
+     */
+    private static <T> boolean allMatch(final List<? extends T> values, final Predicate<? super T> predicate,
+                                        final AtomicBoolean failed) {
+        int checked = 0;
+        for (final T value : values) {
+            if (++checked % CHECK_INTERVAL == 0 && failed.get()) {
+                return false;
+            }
+            if (!predicate.test(value)) {
+                failed.set(true);
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns whether any of values satisfies predicate.
      *
@@ -117,4 +217,432 @@ public class IterativeParallelism implements ScalarIP {
     public <T> boolean any(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
         return !all(threads, values, predicate.negate());
     }
-}
\ No newline at end of file
+
+    /**
+     * Join values to string.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to join.
+     * @return list of joined results of {@link #toString()} call on each value.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    @Override
+    public String join(final int threads, final List<?> values) throws InterruptedException {
+        if (threads > 0) {
+            final List<String> parts = parallel(threads, values,
+                    list -> list.stream().map(String::valueOf).collect(Collectors.joining()));
+            final StringBuilder result = new StringBuilder(parts.stream().mapToInt(String::length).sum());
+            parts.forEach(result::append);
+            return result.toString();
+        }
+        return values.stream().map(String::valueOf).collect(Collectors.joining());
+    }
+
+    /**
+     * Filters values by predicate.
+     *
+     * @param threads   number of concurrent threads.
+     * @param values    values to filter.
+     * @param predicate filter predicate.
+     * @return list of values satisfying given predicate. Order of values is preserved.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    @Override
+    public <T> List<T> filter(final int threads, final List<? extends T> values, final Predicate<? super T> predicate)
+            throws InterruptedException {
+        final List<List<T>> parts = parallel(Math.max(threads, 1), values, list -> {
+            final List<T> part = new ArrayList<>();
+            for (final T value : list) {
+                if (predicate.test(value)) {
+                    part.add(value);
+                }
+            }
+            return part;
+        });
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        final List<T> result = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Maps values. Results of every chunk are written straight to their place in the result.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to map.
+     * @param f       mapper function.
+     * @return list of values mapped by given function.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T, U> List<U> map(final int threads, final List<? extends T> values, final Function<? super T, ? extends U> f)
+            throws InterruptedException {
+        final Object[] result = new Object[values.size()];
+        parallelChunks(Math.max(threads, 1), values, chunk -> {
+            int i = chunk.from();
+            for (final T value : chunk.values()) {
+                result[i++] = f.apply(value);
+            }
+            return null;
+        });
+        return (List<U>) Arrays.asList(result);
+    }
+
+    /**
+     * Reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link Monoid#identity() identity} if no values specified.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public <T> T reduce(final int threads, final List<T> values, final Monoid<T> monoid) throws InterruptedException {
+        return mapReduce(threads, values, Function.identity(), monoid);
+    }
+
+    /**
+     * Maps and reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param lift    mapping function.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link Monoid#identity() identity} if no values specified.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public <T, R> R mapReduce(final int threads, final List<T> values, final Function<? super T, ? extends R> lift,
+                              final Monoid<R> monoid) throws InterruptedException {
+        return mapMaybeReduce(threads, values, value -> Optional.of(lift.apply(value)), monoid);
+    }
+
+    /**
+     * Maps values, skipping ones mapped to empty {@link Optional}, and reduces the rest using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param lift    mapping function.
+     * @param monoid  monoid to use.
+     * @return present values reduced by provided monoid or {@link Monoid#identity() identity} if there are none.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public <T, R> R mapMaybeReduce(final int threads, final List<T> values,
+                                   final Function<? super T, ? extends Optional<? extends R>> lift,
+                                   final Monoid<R> monoid) throws InterruptedException {
+        final List<R> parts = parallel(Math.max(threads, 1), values, list -> {
+            R part = monoid.identity();
+            for (final T value : list) {
+                final Optional<? extends R> lifted = lift.apply(value);
+                if (lifted.isPresent()) {
+                    part = monoid.operator().apply(part, lifted.get());
+                }
+            }
+            return part;
+        });
+        R result = monoid.identity();
+        for (final R part : parts) {
+            result = monoid.operator().apply(result, part);
+        }
+        return result;
+    }
+
+    /**
+     * Returns maximum of {@code int} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to get maximum of.
+     * @return maximum of given values
+     * @throws InterruptedException   if executing thread was interrupted.
+     * @throws NoSuchElementException if no values are given.
+     */
+    public int maximum(final int threads, final int[] values) throws InterruptedException {
+        return extremum(threads, values, true);
+    }
+
+    /**
+     * Returns minimum of {@code int} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to get minimum of.
+     * @return minimum of given values
+     * @throws InterruptedException   if executing thread was interrupted.
+     * @throws NoSuchElementException if no values are given.
+     */
+    public int minimum(final int threads, final int[] values) throws InterruptedException {
+        return extremum(threads, values, false);
+    }
+
+    private int extremum(final int threads, final int[] values, final boolean max) throws InterruptedException {
+        if (values.length == 0) {
+            throw new NoSuchElementException();
+        }
+        final int chunks = chunks(threads, values.length);
+        final int[] res = new int[chunks];
+        run(chunks, i -> {
+            final int from = bound(i, chunks, values.length);
+            final int to = bound(i + 1, chunks, values.length);
+            int value = values[from];
+            for (int j = from + 1; j < to; j++) {
+                value = max ? Math.max(value, values[j]) : Math.min(value, values[j]);
+            }
+            res[i] = value;
+        });
+        int value = res[0];
+        for (final int part : res) {
+            value = max ? Math.max(value, part) : Math.min(value, part);
+        }
+        return value;
+    }
+
+    /**
+     * Returns sum of {@code int} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to sum.
+     * @return sum of given values or {@code 0}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public long sum(final int threads, final int[] values) throws InterruptedException {
+        final int chunks = chunks(threads, values.length);
+        final long[] res = new long[chunks];
+        run(chunks, i -> {
+            final int to = bound(i + 1, chunks, values.length);
+            long sum = 0;
+            for (int j = bound(i, chunks, values.length); j < to; j++) {
+                sum += values[j];
+            }
+            res[i] = sum;
+        });
+        long sum = 0;
+        for (final long part : res) {
+            sum += part;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns number of {@code int} values satisfying predicate, without boxing.
+     *
+     * @param threads   number or concurrent threads.
+     * @param values    values to test.
+     * @param predicate test predicate.
+     * @return number of values satisfying predicate
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public int count(final int threads, final int[] values, final IntPredicate predicate) throws InterruptedException {
+        final int chunks = chunks(threads, values.length);
+        final int[] res = new int[chunks];
+        run(chunks, i -> {
+            final int to = bound(i + 1, chunks, values.length);
+            int count = 0;
+            for (int j = bound(i, chunks, values.length); j < to; j++) {
+                if (predicate.test(values[j])) {
+                    count++;
+                }
+            }
+            res[i] = count;
+        });
+        return Arrays.stream(res).sum();
+    }
+
+    /**
+     * Returns maximum of {@code long} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to get maximum of.
+     * @return maximum of given values
+     * @throws InterruptedException   if executing thread was interrupted.
+     * @throws NoSuchElementException if no values are given.
+     */
+    public long maximum(final int threads, final long[] values) throws InterruptedException {
+        return extremum(threads, values, true);
+    }
+
+    /**
+     * Returns minimum of {@code long} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to get minimum of.
+     * @return minimum of given values
+     * @throws InterruptedException   if executing thread was interrupted.
+     * @throws NoSuchElementException if no values are given.
+     */
+    public long minimum(final int threads, final long[] values) throws InterruptedException {
+        return extremum(threads, values, false);
+    }
+
+    private long extremum(final int threads, final long[] values, final boolean max) throws InterruptedException {
+        if (values.length == 0) {
+            throw new NoSuchElementException();
+        }
+        final int chunks = chunks(threads, values.length);
+        final long[] res = new long[chunks];
+        run(chunks, i -> {
+            final int from = bound(i, chunks, values.length);
+            final int to = bound(i + 1, chunks, values.length);
+            long value = values[from];
+            for (int j = from + 1; j < to; j++) {
+                value = max ? Math.max(value, values[j]) : Math.min(value, values[j]);
+            }
+            res[i] = value;
+        });
+        long value = res[0];
+        for (final long part : res) {
+            value = max ? Math.max(value, part) : Math.min(value, part);
+        }
+        return value;
+    }
+
+    /**
+     * Returns sum of {@code long} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to sum.
+     * @return sum of given values or {@code 0}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public long sum(final int threads, final long[] values) throws InterruptedException {
+        final int chunks = chunks(threads, values.length);
+        final long[] res = new long[chunks];
+        run(chunks, i -> {
+            final int to = bound(i + 1, chunks, values.length);
+            long sum = 0;
+            for (int j = bound(i, chunks, values.length); j < to; j++) {
+                sum += values[j];
+            }
+            res[i] = sum;
+        });
+        long sum = 0;
+        for (final long part : res) {
+            sum += part;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns number of {@code long} values satisfying predicate, without boxing.
+     *
+     * @param threads   number or concurrent threads.
+     * @param values    values to test.
+     * @param predicate test predicate.
+     * @return number of values satisfying predicate
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public int count(final int threads, final long[] values, final LongPredicate predicate) throws InterruptedException {
+        final int chunks = chunks(threads, values.length);
+        final int[] res = new int[chunks];
+        run(chunks, i -> {
+            final int to = bound(i + 1, chunks, values.length);
+            int count = 0;
+            for (int j = bound(i, chunks, values.length); j < to; j++) {
+                if (predicate.test(values[j])) {
+                    count++;
+                }
+            }
+            res[i] = count;
+        });
+        return Arrays.stream(res).sum();
+    }
+
+    /**
+     * Returns maximum of {@code double} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to get maximum of.
+     * @return maximum of given values
+     * @throws InterruptedException   if executing thread was interrupted.
+     * @throws NoSuchElementException if no values are given.
+     */
+    public double maximum(final int threads, final double[] values) throws InterruptedException {
+        return extremum(threads, values, true);
+    }
+
+    /**
+     * Returns minimum of {@code double} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to get minimum of.
+     * @return minimum of given values
+     * @throws InterruptedException   if executing thread was interrupted.
+     * @throws NoSuchElementException if no values are given.
+     */
+    public double minimum(final int threads, final double[] values) throws InterruptedException {
+        return extremum(threads, values, false);
+    }
+
+    private double extremum(final int threads, final double[] values, final boolean max) throws InterruptedException {
+        if (values.length == 0) {
+            throw new NoSuchElementException();
+        }
+        final int chunks = chunks(threads, values.length);
+        final double[] res = new double[chunks];
+        run(chunks, i -> {
+            final int from = bound(i, chunks, values.length);
+            final int to = bound(i + 1, chunks, values.length);
+            double value = values[from];
+            for (int j = from + 1; j < to; j++) {
+                value = max ? Math.max(value, values[j]) : Math.min(value, values[j]);
+            }
+            res[i] = value;
+        });
+        double value = res[0];
+        for (final double part : res) {
+            value = max ? Math.max(value, part) : Math.min(value, part);
+        }
+        return value;
+    }
+
+    /**
+     * Returns sum of {@code double} values without boxing.
+     *
+     * @param threads number or concurrent threads.
+     * @param values  values to sum.
+     * @return sum of given values or {@code 0}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public double sum(final int threads, final double[] values) throws InterruptedException {
+        final int chunks = chunks(threads, values.length);
+        final double[] res = new double[chunks];
+        run(chunks, i -> {
+            final int to = bound(i + 1, chunks, values.length);
+            double sum = 0;
+            for (int j = bound(i, chunks, values.length); j < to; j++) {
+                sum += values[j];
+            }
+            res[i] = sum;
+        });
+        double sum = 0;
+        for (final double part : res) {
+            sum += part;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns number of {@code double} values satisfying predicate, without boxing.
+     *
+     * @param threads   number or concurrent threads.
+     * @param values    values to test.
+     * @param predicate test predicate.
+     * @return number of values satisfying predicate
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    public int count(final int threads, final double[] values, final DoublePredicate predicate) throws InterruptedException {
+        final int chunks = chunks(threads, values.length);
+        final int[] res = new int[chunks];
+        run(chunks, i -> {
+            final int to = bound(i + 1, chunks, values.length);
+            int count = 0;
+            for (int j = bound(i, chunks, values.length); j < to; j++) {
+                if (predicate.test(values[j])) {
+                    count++;
+                }
+            }
+            res[i] = count;
+        });
+        return Arrays.stream(res).sum();
+    }
+}
@@ -0,0 +1,45 @@
+package info.kgeorgiy.ja.mustafina.concurrent;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registration of metrics in the platform MBean server. Metrics are named
+ * {@code <package of metrics class>:type=<type>,id=<n>}, instances of every type are numbered from one.
+ */
+public class MBeans {
+    private static final ConcurrentMap<String, AtomicInteger> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * Registers {@code metrics} and returns its name, or {@code null} if it could not be registered.
+     */
+    public static ObjectName register(Object metrics, String type) {
+        try {
+            ObjectName name = new ObjectName(metrics.getClass().getPackageName() + ":type=" + type + ",id="
+                    + INSTANCES.computeIfAbsent(type, t -> new AtomicInteger()).incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            return name;
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Unregisters metrics returned by {@link #register}, does nothing for {@code null}.
+     */
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            System.err.println("Failed to unregister metrics " + e.getMessage());
+        }
+    }
+}
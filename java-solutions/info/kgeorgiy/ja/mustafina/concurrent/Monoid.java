@@ -0,0 +1,9 @@
+package info.kgeorgiy.ja.mustafina.concurrent;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Associative {@code operator} with {@code identity} element.
+ */
+public record Monoid<T>(T identity, BinaryOperator<T> operator) {
+}
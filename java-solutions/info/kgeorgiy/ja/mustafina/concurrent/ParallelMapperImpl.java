@@ -2,73 +2,286 @@ package info.kgeorgiy.ja.mustafina.concurrent;
 
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
+import javax.management.ObjectName;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.IntStream;
 
+/**
+ * {@link ParallelMapper} with work stealing: every worker has its own lock-free deque,
+ * tasks are spread over deques round-robin, idle workers steal from the tail of other deques.
+ */
 public class ParallelMapperImpl implements ParallelMapper {
-    private final Queue<Runnable> tasks = new ArrayDeque<>();
-    private final List<Thread> action;
+    private static final long CHUNK_NANOS = 50_000;
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 256 : 0;
+    private final Worker[] workers;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger idle = new AtomicInteger();
+    private final ParallelMapperMetrics metrics;
+    private final ObjectName name;
 
     public ParallelMapperImpl(int threads) {
-        this.action = IntStream.range(0, threads).mapToObj(t -> new Thread(() -> {
+        this(threads, false);
+    }
+
+    /**
+     * Creates mapper with {@code threads} workers. If {@code metrics} is set, queue depth, task latency,
+     * worker utilization and caller wait time are collected and registered as a JMX MBean,
+     * see {@link ParallelMapperMetricsMBean}.
+     *
+     * @throws IllegalArgumentException if {@code threads} is not positive.
+     */
+    public ParallelMapperImpl(int threads, boolean metrics) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be positive: " + threads);
+        }
+        this.workers = IntStream.range(0, threads).mapToObj(Worker::new).toArray(Worker[]::new);
+        this.metrics = metrics ? new ParallelMapperMetrics(threads) : null;
+        this.name = metrics ? MBeans.register(this.metrics, "ParallelMapper") : null;
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Returns collected metrics or {@code null} if they are disabled.
+     */
+    public ParallelMapperMetricsMBean getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns mapper for blocking functions, which runs every call in a virtual thread
+     * and allows at most {@code concurrency} simultaneous calls.
+     */
+    public static ParallelMapper ofVirtualThreads(int concurrency) {
+        return new VirtualThreadParallelMapper(concurrency);
+    }
+
+    private class Worker {
+        private final int index;
+        private final Deque<Runnable> tasks = new ConcurrentLinkedDeque<>();
+        private final Thread thread;
+        private final AtomicBoolean parked = new AtomicBoolean();
+
+        public Worker(int index) {
+            this.index = index;
+            this.thread = new Thread(this::run);
+        }
+
+        private void run() {
+            while (!Thread.interrupted()) {
+                Runnable runnable = find();
+                for (int spin = 0; runnable == null && spin < SPINS; spin++) {
+                    Thread.onSpinWait();
+                    runnable = find();
+                }
+                if (runnable == null) {
+                    parked.set(true);
+                    idle.incrementAndGet();
+                    // check again after becoming visible as idle, so a concurrent submit can't be missed
+                    runnable = find();
+                    if (runnable == null) {
+                        LockSupport.park(this);
+                    }
+                    idle.decrementAndGet();
+                    parked.set(false);
+                }
+                if (runnable != null) {
+                    if (metrics == null) {
+                        runnable.run();
+                    } else {
+                        long start = System.nanoTime();
+                        runnable.run();
+                        metrics.task(System.nanoTime() - start);
+                    }
+                }
+            }
+        }
+
+        private Runnable find() {
+            Runnable runnable = tasks.pollFirst();
+            for (int i = 1; runnable == null && i < workers.length; i++) {
+                runnable = workers[(index + i) % workers.length].tasks.pollLast();
+            }
+            return runnable;
+        }
+    }
+
+    private void submit(Runnable runnable) {
+        Worker worker = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+        if (metrics != null) {
+            metrics.queued.increment();
+        }
+        worker.tasks.addLast(runnable);
+        if (idle.get() == 0) {
+            return;
+        }
+        if (!wake(worker)) {
+            for (Worker other : workers) {
+                if (wake(other)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean wake(Worker worker) {
+        // only the first submitter unparks a sleeping worker
+        if (worker.parked.get() && worker.parked.compareAndSet(true, false)) {
+            LockSupport.unpark(worker.thread);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * One {@link #map} call. Up to one task per worker claims contiguous chunks of {@code args}
+     * and writes results straight into the array. Chunk size is tuned so that a chunk takes about
+     * {@code CHUNK_NANOS}, but never exceeds the remaining work divided among workers.
+     * After every chunk a task goes to the back of the queue, so concurrent calls share workers fairly.
+     */
+    private class Result<T, R> implements Runnable {
+        private final Function<? super T, ? extends R> f;
+        private final List<? extends T> args;
+        private final Object[] res;
+        private final ObjIntConsumer<? super R> action;
+        private final CompletableFuture<List<R>> future = new CompletableFuture<>();
+        private final AtomicInteger cursor = new AtomicInteger();
+        private volatile int chunk = 1;
+        private int running;
+        private Throwable exception;
+
+        public Result(Function<? super T, ? extends R> f, List<? extends T> args, ObjIntConsumer<? super R> action) {
+            this.f = f;
+            this.args = args;
+            this.res = action == null ? new Object[args.size()] : null;
+            this.action = action;
+            final int tasks = Math.min(workers.length, args.size());
+            this.running = tasks;
+            if (metrics != null) {
+                metrics.calls.increment();
+                metrics.elements.add(args.size());
+            }
+            if (tasks == 0) {
+                complete();
+            }
+            for (int i = 0; i < tasks; i++) {
+                submit(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            final int size = args.size();
             try {
-                Runnable runnable;
-                while (!Thread.interrupted()) {
-                    synchronized (tasks) {
-                        while (tasks.size() == 0) {
-                            tasks.wait();
+                int n = chunk;
+                int start = cursor.getAndAdd(n);
+                if (start < size) {
+                    int end = (int) Math.min((long) start + n, size);
+                    long time = System.nanoTime();
+                    for (int i = start; i < end; i++) {
+                        R value = f.apply(args.get(i));
+                        if (action == null) {
+                            res[i] = value;
+                        } else {
+                            action.accept(value, i);
                         }
-                        runnable = tasks.poll();
-                        tasks.notify();
                     }
-                    runnable.run();
+                    tune(end - start, System.nanoTime() - time);
+                    if (cursor.get() < size) {
+                        submit(this);
+                        return;
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                cursor.set(size);
+                synchronized (this) {
+                    if (exception == null) {
+                        exception = e;
+                    }
                 }
-            } catch (InterruptedException ignored) {
             }
-        })).peek(Thread::start).toList();
-    }
+            finish();
+        }
 
-    private static class Result<R> {
-        private int space;
-        private final List<R> res;
+        private void tune(int done, long elapsed) {
+            long remaining = args.size() - Math.min(cursor.get(), args.size());
+            long limit = Math.max(1, remaining / workers.length);
+            chunk = (int) Math.max(1, Math.min(limit, done * CHUNK_NANOS / Math.max(elapsed, 1)));
+        }
 
-        public Result(int size) {
-            space = size;
-            res = new ArrayList<>(Collections.nCopies(size, null));
+        synchronized private void finish() {
+            if (--running == 0) {
+                complete();
+            }
         }
 
-        synchronized public List<R> getRes() throws InterruptedException {
-            while (space > 0) wait();
-            return res;
+        @SuppressWarnings("unchecked")
+        private void complete() {
+            if (exception != null) {
+                future.completeExceptionally(exception);
+            } else {
+                future.complete(res == null ? null : (List<R>) Arrays.asList(res));
+            }
         }
 
-        synchronized public void set(int i, R arg) {
-            res.set(i, arg);
-            // :NOTE: brackets
-            if (--space == 0) notify();
+        public List<R> getRes() throws InterruptedException {
+            long start = metrics == null ? 0 : System.nanoTime();
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw (Error) e.getCause();
+            } finally {
+                if (metrics != null) {
+                    metrics.waits.record(System.nanoTime() - start);
+                }
+            }
         }
     }
 
     /**
      * Maps function {@code f} over specified {@code args}.
-     * Mapping for each element performs in parallel.
+     * Mapping is performed in parallel by chunks of consecutive elements.
      *
      * @throws InterruptedException if calling thread was interrupted
      */
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args)
             throws InterruptedException {
-        final int size = args.size();
-        final Result<R> res = new Result<>(size);
-        for (int i = 0; i < size; i++) {
-            synchronized (tasks) {
-                int ind = i;
-                tasks.add(() -> res.set(ind, f.apply(args.get(ind))));
-                tasks.notify();
-            }
-        }
-        return res.getRes();
+        return new Result<T, R>(f, args, null).getRes();
+    }
+
+    /**
+     * Maps function {@code f} over specified {@code args} without waiting for the result.
+     *
+     * @return future of the mapped list, completed exceptionally if {@code f} throws
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args) {
+        return new Result<T, R>(f, args, null).future;
+    }
+
+    /**
+     * Maps function {@code f} over specified {@code args}, passing every result with its index to
+     * {@code action} as soon as it is computed. Results are not retained.
+     * {@code action} is called concurrently from worker threads, in no particular order.
+     *
+     * @return future completed when all elements are processed
+     */
+    public <T, R> CompletableFuture<Void> mapStreaming(Function<? super T, ? extends R> f, List<? extends T> args,
+                                                       ObjIntConsumer<? super R> action) {
+        return new Result<T, R>(f, args, Objects.requireNonNull(action)).future.thenAccept(ignored -> {
+        });
     }
 
     /**
@@ -76,10 +289,11 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public void close() {
-        for (Thread a : action) {
-            a.interrupt();
+        MBeans.unregister(name);
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
             try {
-                a.join();
+                worker.thread.join();
             } catch (InterruptedException ignored) {
             }
         }
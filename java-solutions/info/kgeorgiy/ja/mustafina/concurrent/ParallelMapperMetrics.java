@@ -0,0 +1,100 @@
+package info.kgeorgiy.ja.mustafina.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load of one {@link ParallelMapperImpl}: tasks waiting in worker deques, time spent in tasks
+ * and time callers of {@code map} wait for results. Utilization is measured from busy time
+ * reported by workers after every task, relative to wall time of all workers. Reading an attribute
+ * changes nothing, so any number of JMX clients may poll it.
+ */
+public class ParallelMapperMetrics implements ParallelMapperMetricsMBean {
+    private final int workers;
+    final LongAdder queued = new LongAdder();
+    final LongAdder calls = new LongAdder();
+    final LongAdder elements = new LongAdder();
+    final LongAdder busy = new LongAdder();
+    final LatencyHistogram tasks = new LatencyHistogram();
+    final LatencyHistogram waits = new LatencyHistogram();
+    private final long start = System.nanoTime();
+
+    public ParallelMapperMetrics(int workers) {
+        this.workers = workers;
+    }
+
+    void task(long nanos) {
+        queued.decrement();
+        busy.add(nanos);
+        tasks.record(nanos);
+    }
+
+    @Override
+    public int getWorkers() {
+        return workers;
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queued.sum();
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getElements() {
+        return elements.sum();
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return tasks.getCount();
+    }
+
+    @Override
+    public long getBusyTime() {
+        return busy.sum();
+    }
+
+    @Override
+    public long getUptime() {
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    public double getUtilization() {
+        return Math.min(1, (double) getBusyTime() / Math.max(1, getUptime() * workers));
+    }
+
+    @Override
+    public long getTaskLatencyP50() {
+        return tasks.getPercentile(50);
+    }
+
+    @Override
+    public long getTaskLatencyP99() {
+        return tasks.getPercentile(99);
+    }
+
+    @Override
+    public long getTaskLatencyMax() {
+        return tasks.getMax();
+    }
+
+    @Override
+    public long getWaitP50() {
+        return waits.getPercentile(50);
+    }
+
+    @Override
+    public long getWaitP99() {
+        return waits.getPercentile(99);
+    }
+
+    @Override
+    public long getWaitMax() {
+        return waits.getMax();
+    }
+}
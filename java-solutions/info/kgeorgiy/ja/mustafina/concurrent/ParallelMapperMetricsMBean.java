@@ -0,0 +1,45 @@
+package info.kgeorgiy.ja.mustafina.concurrent;
+
+/**
+ * JMX view of {@link ParallelMapperImpl}. Times are in nanoseconds.
+ */
+public interface ParallelMapperMetricsMBean {
+    int getWorkers();
+
+    long getQueueDepth();
+
+    long getCalls();
+
+    long getElements();
+
+    long getCompletedTasks();
+
+    /**
+     * Returns total time workers spent running tasks.
+     */
+    long getBusyTime();
+
+    /**
+     * Returns time since the mapper was created.
+     */
+    long getUptime();
+
+    /**
+     * Returns share of time workers spent running tasks since the mapper was created.
+     * Utilization over a period is the growth of {@link #getBusyTime()} divided by
+     * the growth of {@link #getUptime()} times {@link #getWorkers()}.
+     */
+    double getUtilization();
+
+    long getTaskLatencyP50();
+
+    long getTaskLatencyP99();
+
+    long getTaskLatencyMax();
+
+    long getWaitP50();
+
+    long getWaitP99();
+
+    long getWaitMax();
+}
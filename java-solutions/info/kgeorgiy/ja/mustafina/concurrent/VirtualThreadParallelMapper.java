@@ -0,0 +1,82 @@
+package info.kgeorgiy.ja.mustafina.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * {@link ParallelMapper} running every element in its own virtual thread.
+ * Suits blocking functions: at most {@code concurrency} calls run at once over all {@link #map} calls,
+ * callers wait for a permit before starting the next thread.
+ */
+public class VirtualThreadParallelMapper implements ParallelMapper {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+
+    public VirtualThreadParallelMapper(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency should be positive: " + concurrency);
+        }
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Maps function {@code f} over specified {@code args}.
+     * Mapping for each element performs in its own virtual thread.
+     *
+     * @throws InterruptedException if calling thread was interrupted
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args)
+            throws InterruptedException {
+        final Object[] res = new Object[args.size()];
+        final CountDownLatch latch = new CountDownLatch(res.length);
+        final AtomicReference<Throwable> exception = new AtomicReference<>();
+        int i = 0;
+        for (; i < res.length && exception.get() == null; i++) {
+            permits.acquire();
+            final int ind = i;
+            executor.execute(() -> {
+                try {
+                    res[ind] = f.apply(args.get(ind));
+                } catch (Throwable e) {
+                    exception.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                    latch.countDown();
+                }
+            });
+        }
+        for (; i < res.length; i++) {
+            latch.countDown();
+        }
+        latch.await();
+        Throwable e = exception.get();
+        if (e instanceof RuntimeException cause) {
+            throw cause;
+        }
+        if (e instanceof Error cause) {
+            throw cause;
+        }
+        if (e != null) {
+            throw new IllegalStateException(e);
+        }
+        return (List<R>) Arrays.asList(res);
+    }
+
+    /**
+     * Interrupts all running calls. All unfinished mappings leave in undefined state.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
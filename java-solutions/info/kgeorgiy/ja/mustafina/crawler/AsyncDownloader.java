@@ -0,0 +1,35 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Downloader which does not block the calling thread. {@link WebCrawler} keeps a download slot
+ * of a host busy until the returned future completes, not until the call returns.
+ */
+public interface AsyncDownloader extends Downloader {
+    /**
+     * Starts download of {@code url}. The future fails with {@link IOException} if the download fails.
+     */
+    CompletableFuture<Document> downloadAsync(String url);
+
+    @Override
+    default Document download(String url) throws IOException {
+        try {
+            return downloadAsync(url).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + url);
+        }
+    }
+}
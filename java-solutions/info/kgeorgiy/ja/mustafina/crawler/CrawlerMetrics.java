@@ -0,0 +1,190 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+import info.kgeorgiy.ja.mustafina.concurrent.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Crawl statistics of one {@link WebCrawler}, accumulated over all its {@code download} calls.
+ * Download latency is kept for the first {@link #MAX_HOSTS} hosts only, later hosts share
+ * the {@link #OTHER_HOSTS} histogram, so a long-lived crawler doesn't grow with the web it has seen.
+ */
+public class CrawlerMetrics implements CrawlerMetricsMBean {
+    /**
+     * Maximal number of hosts with their own latency histogram.
+     */
+    public static final int MAX_HOSTS = 64;
+    /**
+     * Name under which latency of hosts beyond {@link #MAX_HOSTS} is reported.
+     */
+    public static final String OTHER_HOSTS = "*";
+    final LongAdder pages = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder inFlight = new LongAdder();
+    final LongAdder pending = new LongAdder();
+    final LongAdder extractorQueue = new LongAdder();
+    final LongAdder visits = new LongAdder();
+    final LongAdder hits = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentMap<String, LatencyHistogram> hosts = new ConcurrentHashMap<>();
+    private final LatencyHistogram otherHosts = new LatencyHistogram();
+    private final long start = System.nanoTime();
+
+    /**
+     * Download latency of one host.
+     */
+    public record HostLatency(long count, long p50, long p99, long max) {
+    }
+
+    /**
+     * State of a crawler at {@code uptime} nanoseconds since it was created, rates are per second.
+     */
+    public record Snapshot(long uptime, long pages, long bytes, long errors,
+                           double pagesPerSecond, double bytesPerSecond,
+                           long downloadsInFlight, long pendingDownloads, long extractorQueueDepth,
+                           double dedupHitRate, Map<String, HostLatency> hosts) {
+    }
+
+    void downloaded(String host, long nanos, Object document) {
+        latency.record(nanos);
+        histogram(host).record(nanos);
+        if (document == null) {
+            errors.increment();
+        } else {
+            pages.increment();
+            if (document instanceof SizedDocument sized) {
+                bytes.add(sized.size());
+            }
+        }
+    }
+
+    private LatencyHistogram histogram(String host) {
+        LatencyHistogram histogram = hosts.get(host);
+        if (histogram != null) {
+            return histogram;
+        }
+        synchronized (hosts) {
+            if (hosts.size() >= MAX_HOSTS && !hosts.containsKey(host)) {
+                return otherHosts;
+            }
+            return hosts.computeIfAbsent(host, h -> new LatencyHistogram());
+        }
+    }
+
+    private static HostLatency latency(LatencyHistogram histogram) {
+        return new HostLatency(histogram.getCount(), histogram.getPercentile(50), histogram.getPercentile(99),
+                histogram.getMax());
+    }
+
+    void visited(boolean hit) {
+        visits.increment();
+        if (hit) {
+            hits.increment();
+        }
+    }
+
+    /**
+     * Takes a snapshot with throughput since the crawler was created.
+     */
+    public Snapshot snapshot() {
+        return snapshot(null);
+    }
+
+    /**
+     * Takes a snapshot with throughput since {@code previous} one, or since the crawler was created
+     * if it is {@code null}. Every reader keeps its own previous snapshot, so readers don't affect each other.
+     */
+    public Snapshot snapshot(Snapshot previous) {
+        Map<String, HostLatency> latencies = new TreeMap<>();
+        hosts.forEach((host, histogram) -> latencies.put(host, latency(histogram)));
+        if (otherHosts.getCount() > 0) {
+            latencies.put(OTHER_HOSTS, latency(otherHosts));
+        }
+        long uptime = getUptime();
+        long pages = getPages();
+        long bytes = getBytes();
+        double seconds = (double) Math.max(1, previous == null ? uptime : uptime - previous.uptime())
+                / TimeUnit.SECONDS.toNanos(1);
+        return new Snapshot(uptime, pages, bytes, getErrors(),
+                (pages - (previous == null ? 0 : previous.pages())) / seconds,
+                (bytes - (previous == null ? 0 : previous.bytes())) / seconds,
+                getDownloadsInFlight(), getPendingDownloads(), getExtractorQueueDepth(),
+                getDedupHitRate(), latencies);
+    }
+
+    @Override
+    public long getUptime() {
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    public long getPages() {
+        return pages.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getDownloadsInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getPendingDownloads() {
+        return pending.sum();
+    }
+
+    @Override
+    public long getExtractorQueueDepth() {
+        return extractorQueue.sum();
+    }
+
+    @Override
+    public double getDedupHitRate() {
+        long n = visits.sum();
+        return n == 0 ? 0 : (double) hits.sum() / n;
+    }
+
+    @Override
+    public long getDownloadLatencyP50() {
+        return latency.getPercentile(50);
+    }
+
+    @Override
+    public long getDownloadLatencyP99() {
+        return latency.getPercentile(99);
+    }
+
+    @Override
+    public long getDownloadLatencyMax() {
+        return latency.getMax();
+    }
+
+    @Override
+    public String[] getHosts() {
+        Stream<String> names = hosts.keySet().stream().sorted();
+        return (otherHosts.getCount() > 0 ? Stream.concat(names, Stream.of(OTHER_HOSTS)) : names)
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public long getHostLatency(String host, double percentile) {
+        LatencyHistogram histogram = OTHER_HOSTS.equals(host) ? otherHosts : hosts.get(host);
+        return histogram == null ? 0 : histogram.getPercentile(percentile);
+    }
+}
@@ -0,0 +1,51 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+/**
+ * JMX view of {@link WebCrawler}. Times are in nanoseconds. Counters are cumulative and reading them
+ * changes nothing: throughput over a period is the growth of a counter divided by the growth of
+ * {@link #getUptime()}.
+ */
+public interface CrawlerMetricsMBean {
+    /**
+     * Returns time since the crawler was created.
+     */
+    long getUptime();
+
+    long getPages();
+
+    long getBytes();
+
+    long getErrors();
+
+    long getDownloadsInFlight();
+
+    /**
+     * Returns number of downloads waiting for a free slot of their host.
+     */
+    long getPendingDownloads();
+
+    long getExtractorQueueDepth();
+
+    /**
+     * Returns share of found links that were already visited.
+     */
+    double getDedupHitRate();
+
+    long getDownloadLatencyP50();
+
+    long getDownloadLatencyP99();
+
+    long getDownloadLatencyMax();
+
+    /**
+     * Returns hosts with their own latency, followed by {@link CrawlerMetrics#OTHER_HOSTS}
+     * if there were more than {@link CrawlerMetrics#MAX_HOSTS} of them.
+     */
+    String[] getHosts();
+
+    /**
+     * Returns download latency percentile of {@code host}, or {@code 0} if nothing was downloaded from it
+     * or it is counted in {@link CrawlerMetrics#OTHER_HOSTS}.
+     */
+    long getHostLatency(String host, double percentile);
+}
@@ -0,0 +1,103 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+/**
+ * Compact {@link Visited} keeping 64-bit fingerprints of URLs instead of URLs themselves,
+ * 16 to 32 bytes per URL: a slot takes 12 bytes and tables are kept from 3/8 to 3/4 full.
+ * Fingerprints are stored in open-addressing tables with linear probing, split into independently
+ * locked segments. Two URLs with the same fingerprint are taken for one,
+ * which for ten million URLs happens with probability about {@code 10^-5}.
+ */
+class FingerprintVisited implements Visited {
+    private static final int SEGMENTS = 64;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public FingerprintVisited() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private static class Segment {
+        // 0 marks an empty slot
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] depths = new int[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized public int visit(long key, int depth) {
+            int i = find(keys, key);
+            if (keys[i] == key) {
+                int old = depths[i];
+                depths[i] = Math.min(old, depth);
+                return old;
+            }
+            keys[i] = key;
+            depths[i] = depth;
+            if (++size * 4 > keys.length * 3) {
+                grow();
+            }
+            return 0;
+        }
+
+        synchronized public int depth(long key) {
+            int i = find(keys, key);
+            return keys[i] == key ? depths[i] : 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldDepths = depths;
+            keys = new long[oldKeys.length * 2];
+            depths = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = find(keys, oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    depths[i] = oldDepths[j];
+                }
+            }
+        }
+
+        private static int find(long[] keys, long key) {
+            int mask = keys.length - 1;
+            int i = (int) key & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+
+    @Override
+    public int visit(String url, int depth) {
+        long key = fingerprint(url);
+        return segment(key).visit(key, depth);
+    }
+
+    @Override
+    public int depth(String url) {
+        long key = fingerprint(url);
+        return segment(key).depth(key);
+    }
+
+    private Segment segment(long key) {
+        return segments[(int) (key >>> 58)];
+    }
+
+    /**
+     * FNV-1a over UTF-16 chars followed by the MurmurHash3 finalizer, never {@code 0}.
+     */
+    static long fingerprint(String url) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            h = (h ^ url.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
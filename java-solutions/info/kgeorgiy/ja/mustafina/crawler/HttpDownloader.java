@@ -0,0 +1,164 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link AsyncDownloader} over {@link HttpClient}. Any number of downloads may be in flight,
+ * they are served by the few threads of the client.
+ * <p>
+ * With a {@link PageCache}, pages known to the cache are requested conditionally and, if unchanged,
+ * their cached links are returned without parsing. Links of other pages are cached as they are extracted.
+ */
+public class HttpDownloader implements AsyncDownloader, AutoCloseable {
+    private static final Pattern HREF = Pattern.compile(
+            "<a\\s[^>]*?href\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([^\";\\s]+)", Pattern.CASE_INSENSITIVE);
+
+    private final HttpClient client;
+    private final Duration timeout;
+    private final PageCache cache;
+
+    public HttpDownloader() {
+        this(HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build(), Duration.ofSeconds(30));
+    }
+
+    /**
+     * Creates downloader sending requests through {@code client}, each limited by {@code timeout}.
+     */
+    public HttpDownloader(HttpClient client, Duration timeout) {
+        this(client, timeout, null);
+    }
+
+    /**
+     * Creates downloader revalidating pages of {@code cache}, which is not closed by this downloader.
+     */
+    public HttpDownloader(HttpClient client, Duration timeout, PageCache cache) {
+        this.client = client;
+        this.timeout = timeout;
+        this.cache = cache;
+    }
+
+    @Override
+    public CompletableFuture<Document> downloadAsync(String url) {
+        PageCache.Entry cached = cache == null ? null : cache.get(url);
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(new URI(url)).timeout(timeout).GET();
+            if (cached != null && cached.etag() != null) {
+                builder.header("If-None-Match", cached.etag());
+            }
+            if (cached != null && cached.lastModified() != null) {
+                builder.header("If-Modified-Since", cached.lastModified());
+            }
+            request = builder.build();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL " + url, e));
+        }
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenCompose(response -> {
+                    if (response.statusCode() == 304 && cached != null) {
+                        return CompletableFuture.completedFuture(cached::links);
+                    }
+                    if (response.statusCode() != 200) {
+                        return CompletableFuture.failedFuture(
+                                new IOException("HTTP " + response.statusCode() + " for " + url));
+                    }
+                    return CompletableFuture.completedFuture(new HtmlDocument(url, response));
+                });
+    }
+
+    /**
+     * Downloaded page, its links are looked for only when asked for.
+     */
+    private class HtmlDocument implements SizedDocument {
+        private final String url;
+        private final URI base;
+        private final byte[] body;
+        private final Charset charset;
+        private final String etag;
+        private final String lastModified;
+
+        public HtmlDocument(String url, HttpResponse<byte[]> response) {
+            this.url = url;
+            this.base = response.uri();
+            this.body = response.body();
+            this.charset = charset(response.headers().firstValue("Content-Type").orElse(""));
+            this.etag = response.headers().firstValue("ETag").orElse(null);
+            this.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        }
+
+        @Override
+        public List<String> extractLinks() {
+            List<String> links = links(base, new String(body, charset));
+            if (cache != null) {
+                if (etag != null || lastModified != null) {
+                    cache.put(url, new PageCache.Entry(etag, lastModified, links));
+                } else {
+                    cache.remove(url);
+                }
+            }
+            return links;
+        }
+
+        @Override
+        public long size() {
+            return body.length;
+        }
+    }
+
+    private static Charset charset(String contentType) {
+        Matcher matcher = CHARSET.matcher(contentType);
+        try {
+            return matcher.find() ? Charset.forName(matcher.group(1)) : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * Returns absolute http(s) targets of {@code <a href>} tags of {@code html}, without fragments.
+     */
+    static List<String> links(URI base, CharSequence html) {
+        List<String> links = new ArrayList<>();
+        Matcher matcher = HREF.matcher(html);
+        while (matcher.find()) {
+            String href = matcher.group(1) != null ? matcher.group(1)
+                    : matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            try {
+                URI link = base.resolve(href.trim().replace("&amp;", "&"));
+                String scheme = link.getScheme();
+                if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) {
+                    String value = link.toString();
+                    int fragment = value.indexOf('#');
+                    links.add(fragment < 0 ? value : value.substring(0, fragment));
+                }
+            } catch (IllegalArgumentException e) {
+                // malformed links are skipped
+            }
+        }
+        return links;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
@@ -0,0 +1,129 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Links of downloaded pages together with their HTTP validators, used by {@link HttpDownloader}
+ * to revalidate pages with conditional requests instead of downloading and parsing them again.
+ * At most {@code capacity} least recently used pages are kept.
+ * <p>
+ * The cache is read from a binary file on open and written back, oldest pages first, on {@link #close()}.
+ */
+public class PageCache implements Closeable {
+    private static final int MAGIC = 0x57435043;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Cached page. At least one of the validators is not {@code null}.
+     */
+    public record Entry(String etag, String lastModified, List<String> links) {
+        public Entry {
+            links = List.copyOf(links);
+        }
+    }
+
+    public PageCache(Path file, int capacity) throws IOException {
+        this.file = file;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (Files.exists(file) && Files.size(file) > 0) {
+            load();
+        }
+    }
+
+    /**
+     * Reads pages of the cache file. A cache of another version is discarded.
+     *
+     * @throws IOException if the file is not a cache, so that it is not overwritten on close.
+     */
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (Files.size(file) < Integer.BYTES || in.readInt() != MAGIC) {
+                throw new IOException("Not a page cache " + file);
+            }
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            while (true) {
+                String url = in.readUTF();
+                String etag = readNullable(in);
+                String lastModified = readNullable(in);
+                List<String> links = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    links.add(in.readUTF());
+                }
+                entries.put(url, new Entry(etag, lastModified, links));
+            }
+        } catch (EOFException e) {
+            // end of file or a torn tail, pages read so far are kept
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    synchronized public Entry get(String url) {
+        return entries.get(url);
+    }
+
+    synchronized public void put(String url, Entry entry) {
+        entries.put(url, entry);
+    }
+
+    synchronized public void remove(String url) {
+        entries.remove(url);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                write(out, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(DataOutputStream out, String url, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream page = new DataOutputStream(bytes);
+            page.writeUTF(url);
+            writeNullable(page, entry.etag());
+            writeNullable(page, entry.lastModified());
+            page.writeInt(entry.links().size());
+            for (String link : entry.links()) {
+                page.writeUTF(link);
+            }
+        } catch (UTFDataFormatException e) {
+            // pages with links longer than 64K are not persisted
+            return;
+        }
+        bytes.writeTo(out);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
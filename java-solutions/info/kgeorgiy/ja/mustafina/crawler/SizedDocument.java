@@ -0,0 +1,10 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+/**
+ * Document knowing how many bytes were downloaded for it, counted by {@link CrawlerMetrics}.
+ */
+public interface SizedDocument extends Document {
+    long size();
+}
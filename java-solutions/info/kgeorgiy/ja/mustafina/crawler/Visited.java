@@ -0,0 +1,45 @@
+package info.kgeorgiy.ja.mustafina.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Smallest known depth of every URL found by a crawl. Depths are positive.
+ */
+interface Visited {
+    /**
+     * Lowers depth of {@code url} to {@code depth} and returns its previous depth, or {@code 0} if {@code url} is new.
+     */
+    int visit(String url, int depth);
+
+    /**
+     * Returns depth of {@code url}, or {@code 0} if it was never visited.
+     */
+    int depth(String url);
+
+    /**
+     * Returns set keeping every URL as is.
+     */
+    static Visited exact() {
+        ConcurrentMap<String, Integer> depths = new ConcurrentHashMap<>();
+        return new Visited() {
+            @Override
+            public int visit(String url, int depth) {
+                while (true) {
+                    Integer old = depths.putIfAbsent(url, depth);
+                    if (old == null) {
+                        return 0;
+                    }
+                    if (depth >= old || depths.replace(url, old, depth)) {
+                        return old;
+                    }
+                }
+            }
+
+            @Override
+            public int depth(String url) {
+                return depths.getOrDefault(url, 0);
+            }
+        };
+    }
+}
@@ -1,15 +1,26 @@
 package info.kgeorgiy.ja.mustafina.crawler;
 
+import info.kgeorgiy.ja.mustafina.concurrent.MBeans;
 import info.kgeorgiy.java.advanced.crawler.*;
 
 import java.util.*;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+import javax.management.ObjectName;
 
 public class WebCrawler implements Crawler {
     private final Downloader downloader;
     private final ExecutorService downloaders;
     private final ExecutorService extractors;
+    private final int perHost;
+    private final boolean compact;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final CrawlerMetrics metrics;
+    private final ObjectName name;
 
     public static void main(String[] args) {
         try (Crawler crawler = new WebCrawler(new CachingDownloader(), getValue(2, args), getValue(3, args),
@@ -29,66 +40,335 @@ public class WebCrawler implements Crawler {
         }
     }
 
-    @SuppressWarnings("unused")
     public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost) {
+        this(downloader, downloaders, extractors, perHost, false);
+    }
+
+    /**
+     * Creates crawler which, if {@code compact} is set, remembers visited URLs by 64-bit fingerprints
+     * instead of keeping them, see {@link FingerprintVisited}.
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost, boolean compact) {
+        this(downloader, downloaders, extractors, perHost, compact, false);
+    }
+
+    /**
+     * Creates crawler which, if {@code metrics} is also set, collects throughput, per-host download latency,
+     * queue depths and dedup hit rate and registers them as a JMX MBean, see {@link CrawlerMetricsMBean}.
+     *
+     * @throws IllegalArgumentException if {@code downloaders}, {@code extractors} or {@code perHost}
+     *                                  is not positive.
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost, boolean compact,
+                      boolean metrics) {
+        if (downloaders < 1 || extractors < 1 || perHost < 1) {
+            throw new IllegalArgumentException("Numbers of downloaders, extractors and downloads per host "
+                    + "should be positive: " + downloaders + " " + extractors + " " + perHost);
+        }
         this.downloader = downloader;
         this.extractors = Executors.newFixedThreadPool(extractors);
         this.downloaders = Executors.newFixedThreadPool(downloaders);
+        this.perHost = perHost;
+        this.compact = compact;
+        this.metrics = metrics ? new CrawlerMetrics() : null;
+        this.name = metrics ? MBeans.register(this.metrics, "WebCrawler") : null;
+    }
+
+    /**
+     * Returns collected metrics or {@code null} if they are disabled.
+     */
+    public CrawlerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Downloads of one host. At most {@code perHost} of them are started on {@code downloaders},
+     * the rest wait here and are started one by one as running downloads complete.
+     * A download holds its slot until the returned future completes.
+     * <p>
+     * A host without downloads is removed from {@code hosts}, so they don't pile up between crawls;
+     * a later download of the host creates a new one.
+     */
+    private class Host {
+        private final String name;
+        private final Queue<Supplier<CompletableFuture<?>>> pending = new ArrayDeque<>();
+        private int running;
+        private boolean removed;
+
+        public Host(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Submits {@code task}, or returns {@code false} if this host has already been removed.
+         */
+        synchronized public boolean submit(Supplier<CompletableFuture<?>> task) {
+            if (removed) {
+                return false;
+            }
+            if (running < perHost) {
+                running++;
+                downloaders.submit(wrap(task));
+            } else {
+                pending.add(task);
+                if (metrics != null) {
+                    metrics.pending.increment();
+                }
+            }
+            return true;
+        }
+
+        private Runnable wrap(Supplier<CompletableFuture<?>> task) {
+            return () -> {
+                try {
+                    task.get().whenComplete((result, e) -> next());
+                } catch (RuntimeException | Error e) {
+                    next();
+                    throw e;
+                }
+            };
+        }
+
+        synchronized private void next() {
+            Supplier<CompletableFuture<?>> task = pending.poll();
+            if (task != null) {
+                if (metrics != null) {
+                    metrics.pending.decrement();
+                }
+                downloaders.submit(wrap(task));
+            } else if (--running == 0) {
+                removed = true;
+                hosts.remove(name, this);
+            }
+        }
     }
 
     @Override
     public Result download(String s, int i) {
-        Set<String> checked = new ConcurrentSkipListSet<>();
-        Set<String> urls = new ConcurrentSkipListSet<>();
-        urls.add(s);
-        Phaser phaser = new Phaser(1);
-        Map<String, IOException> downloadErrors = new ConcurrentHashMap<>();
-        int depth = 0;
-        while (depth < i) {
-            List<String> list = new ArrayList<>();
-            for (String u : urls) {
-                if (!checked.contains(u)) {
-                    list.add(u);
+        return new Crawl(i).run(s);
+    }
+
+    /**
+     * Starts download of {@code url}. A blocking downloader runs in the calling thread.
+     */
+    private CompletableFuture<Document> fetch(String url) {
+        if (downloader instanceof AsyncDownloader async) {
+            return async.downloadAsync(url);
+        }
+        try {
+            return CompletableFuture.completedFuture(downloader.download(url));
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Links of a page kept to visit them again if the page is found at a smaller depth.
+     */
+    private record Retained(List<String> links, int depth) {
+    }
+
+    /**
+     * One {@link #download} call. Every URL is scheduled as soon as it is found, no matter what
+     * happens at other depths.
+     * <p>
+     * A page may be found at a smaller depth after it was downloaded, then its links are visited
+     * once more. Download and extraction of a page are counted at its current depth and move with it,
+     * so pages at depth {@code d} may only be found while something is pending at depth {@code d - 2} or less,
+     * and their links are kept only until then.
+     */
+    private class Crawl {
+        private final int depth;
+        private final Visited visited = compact ? new FingerprintVisited() : Visited.exact();
+        private final Map<String, Retained> retained = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Integer> working = new ConcurrentHashMap<>();
+        private final Queue<String> downloaded = new ConcurrentLinkedQueue<>();
+        private final Map<String, IOException> downloadErrors = new ConcurrentHashMap<>();
+        private final AtomicIntegerArray active;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile int settled;
+
+        public Crawl(int depth) {
+            this.depth = depth;
+            this.active = new AtomicIntegerArray(depth + 1);
+        }
+
+        public Result run(String url) {
+            if (depth <= 0) {
+                return new Result(List.of(), Map.of());
+            }
+            active.incrementAndGet(1);
+            visit(url, 1);
+            finish(1);
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Result(new ArrayList<>(downloaded), downloadErrors);
+        }
+
+        private void visit(String url, int d) {
+            int old = visited.visit(url, d);
+            if (metrics != null) {
+                metrics.visited(old != 0);
+            }
+            if (old != 0) {
+                if (d < old) {
+                    lower(url, d);
+                    Retained page = retained.remove(url);
+                    if (page != null) {
+                        spread(url, page.links());
+                    }
                 }
-                urls.remove(u);
-            }
-            depth++;
-            for (String l : list) {
-                int finalDepth = depth;
-                phaser.register();
-                checked.add(l);
-                downloaders.submit(() -> {
-                    try {
-                        Document doc = downloader.download(l);
-                        if (finalDepth != i) {
-                            phaser.register();
-                            extractors.submit(() -> {
-                                List<String> links = new ArrayList<>();
-                                try {
-                                    links = doc.extractLinks();
-                                } catch (IOException e) {
-                                    System.err.println("Failed to extract links " + e.getMessage());
-                                }
-                                urls.addAll(links);
-                                phaser.arriveAndDeregister();
-                            });
-                        }
-                    } catch (IOException e) {
-                        downloadErrors.put(l, e);
+                return;
+            }
+            String host;
+            try {
+                host = URLUtils.getHost(url);
+            } catch (MalformedURLException e) {
+                downloadErrors.put(url, e);
+                return;
+            }
+            active.incrementAndGet(d);
+            working.put(url, d);
+            lower(url, visited.depth(url));
+            Supplier<CompletableFuture<?>> task = () -> {
+                long start = System.nanoTime();
+                if (metrics != null) {
+                    metrics.inFlight.increment();
+                }
+                return fetch(url).handle((document, e) -> {
+                    if (metrics != null) {
+                        metrics.inFlight.decrement();
+                        metrics.downloaded(host, System.nanoTime() - start, document);
                     }
-                    phaser.arriveAndDeregister();
+                    return process(url, document, e);
                 });
+            };
+            while (!hosts.computeIfAbsent(host, Host::new).submit(task)) {
+                // the host has just become idle and been removed, take the new one
+            }
+        }
+
+        private Void process(String url, Document document, Throwable e) {
+            boolean extracting = false;
+            try {
+                if (e == null) {
+                    downloaded.add(url);
+                    int current = visited.depth(url);
+                    if (current < depth || current > settled + 2) {
+                        extract(url, document);
+                        extracting = true;
+                    }
+                } else if (unwrap(e) instanceof IOException cause) {
+                    downloadErrors.put(url, cause);
+                }
+            } finally {
+                if (!extracting) {
+                    release(url);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Moves pending work of {@code url}, if any, to depth {@code d} if it is smaller.
+         */
+        private void lower(String url, int d) {
+            int[] from = new int[1];
+            working.computeIfPresent(url, (u, c) -> {
+                if (d >= c) {
+                    return c;
+                }
+                active.incrementAndGet(d);
+                from[0] = c;
+                return d;
+            });
+            if (from[0] != 0) {
+                finish(from[0]);
+            }
+        }
+
+        private void release(String url) {
+            finish(working.remove(url));
+        }
+
+        /**
+         * Extracts links of a downloaded page, taking over its pending work. Links of a page at the last depth
+         * are only extracted if the page may still be found at a smaller depth.
+         */
+        private void extract(String url, Document document) {
+            if (metrics != null) {
+                metrics.extractorQueue.increment();
             }
-            phaser.arriveAndAwaitAdvance();
+            extractors.submit(() -> {
+                if (metrics != null) {
+                    metrics.extractorQueue.decrement();
+                }
+                try {
+                    spread(url, document.extractLinks());
+                } catch (IOException e) {
+                    System.err.println("Failed to extract links " + e.getMessage());
+                } finally {
+                    release(url);
+                }
+            });
         }
-        for (String downloaded : downloadErrors.keySet()) {
-            checked.remove(downloaded);
+
+        /**
+         * Visits links of a page at its current depth. The links are retained before the depth is read,
+         * so a concurrent {@link #visit} either finds them or lowers the depth first.
+         */
+        private void spread(String url, List<String> links) {
+            int d = visited.depth(url);
+            if (d > settled + 2) {
+                Retained page = new Retained(links, d);
+                retained.put(url, page);
+                d = visited.depth(url);
+                if (d <= settled + 2) {
+                    retained.remove(url, page);
+                }
+            }
+            if (d < depth) {
+                for (String link : links) {
+                    visit(link, d + 1);
+                }
+            }
+        }
+
+        private void finish(int d) {
+            if (active.decrementAndGet(d) == 0) {
+                settle();
+            }
+        }
+
+        /**
+         * Advances {@code settled} over depths without pending work. Work at a depth is only created
+         * or moved there by work at smaller depths, so a depth stays settled once all smaller ones are.
+         */
+        synchronized private void settle() {
+            int old = settled;
+            while (settled < depth && active.get(settled + 1) == 0) {
+                settled++;
+            }
+            if (settled != old) {
+                int bound = settled + 2;
+                retained.values().removeIf(page -> page.depth() <= bound);
+                if (settled == depth) {
+                    done.countDown();
+                }
+            }
         }
-        return new Result(checked.stream().toList(), downloadErrors);
     }
 
     @Override
     public void close() {
+        MBeans.unregister(name);
         downloaders.shutdown();
         extractors.shutdown();
         try {
@@ -0,0 +1,62 @@
+package info.kgeorgiy.ja.mustafina.hello;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Bounded FIFO of datagrams waiting to be sent. Every slot keeps its buffer for reuse,
+ * a buffer is only reallocated when a larger datagram comes.
+ */
+class DatagramRing {
+    private final ByteBuffer[] buffers;
+    private final SocketAddress[] addresses;
+    private int head;
+    private int size;
+
+    public DatagramRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive: " + capacity);
+        }
+        buffers = new ByteBuffer[capacity];
+        addresses = new SocketAddress[capacity];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == buffers.length;
+    }
+
+    /**
+     * Copies remaining bytes of {@code data} to the tail. The ring must not be full.
+     */
+    public void add(ByteBuffer data, SocketAddress address) {
+        int i = (head + size) % buffers.length;
+        if (buffers[i] == null || buffers[i].capacity() < data.remaining()) {
+            buffers[i] = ByteBuffer.allocate(data.remaining());
+        }
+        buffers[i].clear();
+        buffers[i].put(data).flip();
+        addresses[i] = address;
+        size++;
+    }
+
+    public void removeOldest() {
+        addresses[head] = null;
+        head = (head + 1) % buffers.length;
+        size--;
+    }
+
+    /**
+     * Sends datagrams from the head while the channel takes them.
+     */
+    public void drain(DatagramChannel channel) throws IOException {
+        while (size > 0 && channel.send(buffers[head], addresses[head]) != 0) {
+            removeOldest();
+        }
+    }
+}
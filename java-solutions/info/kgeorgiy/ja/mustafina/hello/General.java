@@ -1,8 +1,13 @@
 package info.kgeorgiy.ja.mustafina.hello;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
 import java.nio.channels.Selector;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -54,9 +59,40 @@ public class General {
         }
     }
 
+    /**
+     * Opens {@code count} channels bound to {@code port} with {@code SO_REUSEPORT}, so the kernel
+     * spreads datagrams among them, or a single channel if the option is not supported.
+     */
+    public List<DatagramChannel> open(int port, int count) throws IOException {
+        List<DatagramChannel> channels = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                DatagramChannel channel = DatagramChannel.open();
+                channels.add(channel);
+                if (count > 1 && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                } else {
+                    count = 1;
+                }
+                channel.bind(new InetSocketAddress(i == 0 ? port
+                        : ((InetSocketAddress) channels.get(0).getLocalAddress()).getPort()));
+            }
+        } catch (IOException e) {
+            for (DatagramChannel channel : channels) {
+                channel.close();
+            }
+            throw e;
+        }
+        return channels;
+    }
+
     public void select(Selector selector) {
+        select(selector, TIME_OUT);
+    }
+
+    public void select(Selector selector, long timeout) {
         try {
-            selector.select(TIME_OUT);
+            selector.select(timeout);
         } catch (IOException e) {
             System.err.println("Error: Input or Output error occurs" + e.getMessage());
         }
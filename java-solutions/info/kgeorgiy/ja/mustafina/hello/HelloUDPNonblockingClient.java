@@ -7,17 +7,39 @@ import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 public class HelloUDPNonblockingClient implements HelloClient {
     private static final General general = new General();
+    private static final long TIME_OUT_NANOS = TimeUnit.MILLISECONDS.toNanos(general.TIME_OUT);
+    private final int window;
 
     public static void main(String[] args) {
         general.clientMain(args);
     }
 
+    public HelloUDPNonblockingClient() {
+        this(1);
+    }
+
+    /**
+     * Creates client keeping up to {@code window} requests of every thread in flight.
+     * Responses are still printed in order of requests.
+     *
+     * @throws IllegalArgumentException if {@code window} is not positive.
+     */
+    public HelloUDPNonblockingClient(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window should be positive: " + window);
+        }
+        this.window = window;
+    }
+
     @Override
     public void run(String host, int port, String prefix, int threads, int requests) {
         try {
@@ -29,8 +51,10 @@ public class HelloUDPNonblockingClient implements HelloClient {
                     DatagramChannel channel = DatagramChannel.open();
                     channel.configureBlocking(false);
                     channel.connect(address);
-                    channel.register(selector, SelectionKey.OP_WRITE, new Content(thread, requests,
-                            ByteBuffer.allocate(channel.socket().getReceiveBufferSize())));
+                    if (requests > 0) {
+                        channel.register(selector, SelectionKey.OP_WRITE, new Window(thread, requests,
+                                ByteBuffer.allocate(channel.socket().getReceiveBufferSize())));
+                    }
                     datagramChannels[thread] = channel;
                 } catch (IOException e) {
                     System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
@@ -52,83 +76,135 @@ public class HelloUDPNonblockingClient implements HelloClient {
 
     private void process(Selector selector, String prefix, SocketAddress address) {
         while (!(Thread.interrupted() || selector.keys().isEmpty())) {
-            general.select(selector);
-            if (!selector.selectedKeys().isEmpty()) {
-                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
-                while (iterator.hasNext()) {
-                    SelectionKey key = iterator.next();
-                    Content content = (Content) key.attachment();
-                    String request = prefix + content.getThreadNum() + "_" + content.getRequestNum();
-                    if (key.isWritable()) {
-                        DatagramChannel channel = (DatagramChannel) key.channel();
-                        try {
-                            channel.send(ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8)), address);
-                        } catch (IOException e) {
-                            System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
+            long now = System.nanoTime();
+            long nearest = now + TIME_OUT_NANOS;
+            for (SelectionKey key : selector.keys()) {
+                Window content = (Window) key.attachment();
+                nearest = Math.min(nearest, content.expire(now));
+                if (key.isValid() && content.hasUnsent()) {
+                    key.interestOpsOr(SelectionKey.OP_WRITE);
+                }
+            }
+            general.select(selector, Math.max(1, TimeUnit.NANOSECONDS.toMillis(nearest - now + 999_999)));
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                Window content = (Window) key.attachment();
+                DatagramChannel channel = (DatagramChannel) key.channel();
+                try {
+                    if (key.isValid() && key.isWritable()) {
+                        content.send(channel, address, prefix);
+                        if (!content.hasUnsent()) {
+                            key.interestOps(SelectionKey.OP_READ);
                         }
-                        key.interestOps(SelectionKey.OP_READ);
                     }
-                    if (key.isReadable()) {
-                        try {
-                            DatagramChannel channel = (DatagramChannel) key.channel();
-                            ByteBuffer buff = content.getBuffer().clear();
-                            channel.receive(buff);
-                            buff.flip();
-                            byte[] ans = new byte[buff.remaining()];
-                            buff.get(ans);
-                            String response = new String(ans, StandardCharsets.UTF_8);
-                            if (general.match(prefix, content.getThreadNum(), content.getRequestNum(), response)) {
-                                general.write(request, response);
-                                key.interestOps(SelectionKey.OP_WRITE);
-                                if (!content.add()) {
-                                    key.channel().close();
-                                }
-                            }
-                        } catch (IOException e) {
-                            System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
+                    if (key.isValid() && key.isReadable()) {
+                        content.receive(channel, prefix);
+                        if (content.isDone()) {
+                            channel.close();
                         }
                     }
-                    iterator.remove();
-                }
-            } else {
-                for (SelectionKey key : selector.keys()) {
-                    key.interestOps(SelectionKey.OP_WRITE);
+                } catch (IOException e) {
+                    System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
                 }
             }
         }
     }
 
-    private static class Content {
+    /**
+     * Requests of one thread. Requests {@code printed..next-1} are in flight or answered but waiting
+     * for earlier ones to be printed; each of them is sent again if not answered in time.
+     */
+    private class Window {
         private final ByteBuffer buffer;
         private final int threadNum;
         private final int capacity;
-        private int requestNum = 0;
+        private final String[] responses = new String[window];
+        private final long[] deadlines = new long[window];
+        private final Queue<Integer> unsent = new ArrayDeque<>();
+        private int printed = 0;
+        private int next = 0;
 
-        public Content(int thread, int capacity, ByteBuffer buffer) {
+        public Window(int thread, int capacity, ByteBuffer buffer) {
             threadNum = thread;
             this.buffer = buffer;
             this.capacity = capacity;
+            fill();
         }
 
-        public int getRequestNum() {
-            return requestNum;
+        private void fill() {
+            while (next < capacity && next < printed + window) {
+                deadlines[next % window] = Long.MAX_VALUE;
+                unsent.add(next++);
+            }
         }
 
-        public ByteBuffer getBuffer() {
-            return buffer;
+        private String request(String prefix, int requestNum) {
+            return prefix + threadNum + "_" + requestNum;
         }
 
-        public int getThreadNum() {
-            return threadNum;
+        public boolean hasUnsent() {
+            return !unsent.isEmpty();
         }
 
-        private void inc() {
-            requestNum++;
+        public boolean isDone() {
+            return printed == capacity;
         }
 
-        public boolean add() {
-            inc();
-            return requestNum < capacity;
+        public void send(DatagramChannel channel, SocketAddress address, String prefix) throws IOException {
+            while (!unsent.isEmpty()) {
+                int requestNum = unsent.peek();
+                if (requestNum >= printed && responses[requestNum % window] == null) {
+                    ByteBuffer request = ByteBuffer.wrap(request(prefix, requestNum).getBytes(StandardCharsets.UTF_8));
+                    if (channel.send(request, address) == 0) {
+                        return;
+                    }
+                    deadlines[requestNum % window] = System.nanoTime() + TIME_OUT_NANOS;
+                }
+                unsent.poll();
+            }
+        }
+
+        /**
+         * Queues requests left without response for too long and returns the nearest deadline of the rest.
+         */
+        public long expire(long now) {
+            long nearest = Long.MAX_VALUE;
+            for (int requestNum = printed; requestNum < next; requestNum++) {
+                int i = requestNum % window;
+                if (responses[i] == null) {
+                    if (deadlines[i] <= now) {
+                        deadlines[i] = Long.MAX_VALUE;
+                        unsent.add(requestNum);
+                    }
+                    nearest = Math.min(nearest, deadlines[i]);
+                }
+            }
+            return nearest;
+        }
+
+        /**
+         * Matches every received response with a request in flight and prints answered requests in order.
+         */
+        public void receive(DatagramChannel channel, String prefix) throws IOException {
+            while (channel.receive(buffer.clear()) != null) {
+                buffer.flip();
+                String response = StandardCharsets.UTF_8.decode(buffer).toString();
+                for (int requestNum = printed; requestNum < next; requestNum++) {
+                    if (responses[requestNum % window] == null
+                            && general.match(prefix, threadNum, requestNum, response)) {
+                        responses[requestNum % window] = response;
+                        break;
+                    }
+                }
+            }
+            while (printed < next && responses[printed % window] != null) {
+                general.write(request(prefix, printed), responses[printed % window]);
+                responses[printed % window] = null;
+                printed++;
+            }
+            fill();
         }
     }
 }
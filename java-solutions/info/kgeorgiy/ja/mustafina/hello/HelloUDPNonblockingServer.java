@@ -7,109 +7,222 @@ import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.charset.*;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Queue;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Nonblocking {@link HelloServer} run as independent event loops, each owning its channel and selector.
+ * There is one loop per channel: with {@code SO_REUSEPORT} a channel is bound per thread, otherwise
+ * the port has a single channel and a single loop, since loops sharing a channel would all be woken
+ * by every datagram; the extra threads are not started then.
+ */
 public class HelloUDPNonblockingServer implements HelloServer {
     private static final General general = new General();
+    private static final byte[] PREFIX = "Hello, ".getBytes(StandardCharsets.UTF_8);
+    private static final int DEFAULT_CAPACITY = 256;
+    private final boolean reusePort;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final LongAdder dropped = new LongAdder();
     private ExecutorService service;
-    private Selector selector;
-    private DatagramChannel channel;
+    private List<DatagramChannel> channels;
+    private final List<Selector> selectors = new ArrayList<>();
 
     public static void main(String[] args) {
         General general = new General();
         general.serverMain(args);
     }
 
+    public HelloUDPNonblockingServer() {
+        this(false);
+    }
+
+    /**
+     * Creates server which, if {@code reusePort} is set, binds a channel per thread with {@code SO_REUSEPORT},
+     * so the kernel spreads requests among channels instead of queueing them on one.
+     */
+    public HelloUDPNonblockingServer(boolean reusePort) {
+        this(reusePort, DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates server keeping at most {@code capacity} responses per event loop that the channel
+     * could not take at once, resolving overflow by {@code policy}.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive.
+     */
+    public HelloUDPNonblockingServer(boolean reusePort, int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive: " + capacity);
+        }
+        this.reusePort = reusePort;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * What to do with a response when the channel is busy and the responses waiting for it fill the ring.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Stop reading until the ring drains, leaving requests to the kernel queue.
+         */
+        PAUSE_READING,
+        /**
+         * Drop the new response.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest waiting response, which its client is the most likely to have given up on.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Returns number of responses dropped because of overflow.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Starts an event loop per channel: {@code threads} of them with {@code SO_REUSEPORT}, one otherwise.
+     */
     @Override
     public void start(int port, int threads) {
-        if (channel != null) {
+        if (channels != null) {
             return;
         }
         try {
-            channel = DatagramChannel.open();
-            channel.configureBlocking(false);
-            selector = Selector.open();
-            channel.register(selector, SelectionKey.OP_READ);
-            channel.bind(new InetSocketAddress(port));
+            channels = general.open(port, reusePort ? threads : 1);
+            service = Executors.newFixedThreadPool(channels.size());
+            for (DatagramChannel channel : channels) {
+                Selector selector = Selector.open();
+                selectors.add(selector);
+                service.submit(new EventLoop(channel, selector));
+            }
         } catch (IOException e) {
             System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
         }
-        Queue<Content> queue = new ConcurrentLinkedDeque<>();
-        service = Executors.newFixedThreadPool(threads);
-        Executors.newSingleThreadExecutor().submit(() -> {
-            while (!channel.socket().isClosed() && !Thread.interrupted()) {
+    }
+
+    /**
+     * Reads requests of its channel and answers them from the same thread. Requests are received
+     * right after the {@code "Hello, "} prefix of the only buffer, which is then sent back as is.
+     * Responses the channel cannot take at once wait for {@code OP_WRITE} in a bounded ring,
+     * which is drained as far as possible on every {@code OP_WRITE}; later responses queue behind them.
+     */
+    private class EventLoop implements Runnable {
+        private final DatagramChannel channel;
+        private final Selector selector;
+        private final DatagramRing pending = new DatagramRing(capacity);
+        private ByteBuffer buffer;
+
+        public EventLoop(DatagramChannel channel, Selector selector) {
+            this.channel = channel;
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                channel.configureBlocking(false);
+                buffer = ByteBuffer.allocateDirect(channel.socket().getReceiveBufferSize());
+                buffer.put(PREFIX);
+                channel.register(selector, SelectionKey.OP_READ);
+            } catch (IOException e) {
+                System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
+                return;
+            }
+            while (selector.isOpen() && !Thread.interrupted()) {
                 try {
                     if (selector.select() > 0) {
-                        process(queue);
+                        process();
                     }
+                } catch (ClosedSelectorException | ClosedChannelException e) {
+                    return;
                 } catch (IOException e) {
                     System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
                 }
             }
-        });
-    }
+        }
 
-    private void process(Queue<Content> queue) throws IOException {
-        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
-        while (iterator.hasNext()) {
-            SelectionKey key = iterator.next();
-            if (key.isValid()) {
-                if (key.isReadable()) {
-                    service.submit(getRunnable(queue, key));
+        private void process() throws IOException {
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                if (key.isValid() && key.isWritable()) {
+                    write(key);
                 }
-                if (key.isWritable()) {
-                    if (!queue.isEmpty()) {
-                        Content content = queue.poll();
-                        channel.send(content.getBuffer(), content.getAddress());
+                if (key.isValid() && key.isReadable()) {
+                    read(key);
+                }
+            }
+        }
+
+        /**
+         * Answers requests already received by the channel, at most {@code capacity} of them per wakeup,
+         * so that waiting responses get their {@code OP_WRITE} under sustained load.
+         * Waiting responses are retried before every new one is queued.
+         */
+        private void read(SelectionKey key) throws IOException {
+            for (int reads = 0; reads < capacity; reads++) {
+                buffer.limit(buffer.capacity()).position(PREFIX.length);
+                SocketAddress address = channel.receive(buffer);
+                if (address == null) {
+                    break;
+                }
+                buffer.flip();
+                pending.drain(channel);
+                if (pending.isEmpty() && channel.send(buffer, address) != 0) {
+                    continue;
+                }
+                if (pending.isFull()) {
+                    dropped.increment();
+                    if (policy == OverflowPolicy.DROP_NEWEST) {
+                        continue;
                     }
-                    key.interestOpsOr(SelectionKey.OP_READ);
-                    selector.wakeup();
+                    pending.removeOldest();
+                }
+                pending.add(buffer, address);
+                if (policy == OverflowPolicy.PAUSE_READING && pending.isFull()) {
+                    break;
                 }
             }
-            iterator.remove();
+            key.interestOps(interest());
         }
-    }
 
-    private Runnable getRunnable(Queue<Content> queue, SelectionKey key) throws IOException {
-        Charset utf8 = StandardCharsets.UTF_8;
-        int size = 0;
-        try {
-            size = channel.socket().getReceiveBufferSize();
-        } catch (SocketException e) {
-            System.err.println("Error: there is an error in the underlying protocol " + e.getMessage());
+        private void write(SelectionKey key) throws IOException {
+            pending.drain(channel);
+            key.interestOps(interest());
+        }
+
+        private int interest() {
+            int ops = pending.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+            return policy == OverflowPolicy.PAUSE_READING && pending.isFull() ? ops : ops | SelectionKey.OP_READ;
         }
-        ByteBuffer byteBuffer = ByteBuffer.allocate(size);
-        SocketAddress socketAddress = channel.receive(byteBuffer);
-        return (() -> {
-            byteBuffer.flip();
-            String result = "Hello, " + utf8.decode(byteBuffer);
-            queue.add(new Content(ByteBuffer.wrap(result.getBytes(utf8)), socketAddress));
-            key.interestOpsOr(SelectionKey.OP_WRITE);
-            selector.wakeup();
-        });
     }
 
     @Override
     public void close() {
         try {
-            selector.close();
-            channel.close();
+            for (Selector selector : selectors) {
+                selector.close();
+            }
+            if (channels != null) {
+                for (DatagramChannel channel : channels) {
+                    channel.close();
+                }
+            }
         } catch (IOException e) {
             System.err.println(general.IOEXCEPTION_MESSAGE + e.getMessage());
         }
-        general.close(service);
-    }
-
-    private record Content(ByteBuffer buffer, SocketAddress address) {
-
-        public ByteBuffer getBuffer() {
-            return buffer;
-        }
-
-        public SocketAddress getAddress() {
-            return address;
+        if (service != null) {
+            general.close(service);
         }
     }
 }
@@ -4,52 +4,78 @@ import info.kgeorgiy.java.advanced.hello.HelloServer;
 
 import java.io.IOException;
 import java.net.*;
-import java.nio.charset.*;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.concurrent.*;
 
 public class HelloUDPServer implements HelloServer {
     private static final General general = new General();
+    private static final byte[] PREFIX = "Hello, ".getBytes(StandardCharsets.UTF_8);
+    private final boolean reusePort;
     private ExecutorService service;
-    private DatagramSocket socket;
+    private List<DatagramChannel> channels = List.of();
 
     public static void main(String[] args) {
         general.serverMain(args);
     }
 
+    public HelloUDPServer() {
+        this(false);
+    }
+
+    /**
+     * Creates server which, if {@code reusePort} is set, binds a socket per thread with {@code SO_REUSEPORT},
+     * so the kernel spreads requests among threads instead of queueing them on one socket.
+     */
+    public HelloUDPServer(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
     @Override
     public void start(int port, int threads) {
         try {
-            socket = new DatagramSocket(port);
+            channels = general.open(port, reusePort ? threads : 1);
             service = Executors.newFixedThreadPool(threads);
             for (int thread = 0; thread < threads; thread++) {
-            service.submit(() -> {
-                while (!Thread.interrupted() && !socket.isClosed()) {
-                    try {
-                        int size = socket.getSendBufferSize();
-                        DatagramPacket packet = new DatagramPacket(new byte[size], size);
-                        try {
-                            socket.receive(packet);
-                            Charset utf8 = StandardCharsets.UTF_8;
-                            packet.setData(("Hello, " + new String(packet.getData(), packet.getOffset(),
-                                    packet.getLength(), utf8)).getBytes(utf8));
-                            socket.send(packet);
-                        } catch (IOException e) {
-                            System.err.println("Error: " + e.getMessage());
-                        }
-                    } catch (SocketException e) {
-                        System.err.println("Error: Here is an error in the underlying protocol " + e.getMessage());
-                    }
-                }
-            });
+                DatagramSocket socket = channels.get(thread % channels.size()).socket();
+                int size = socket.getReceiveBufferSize();
+                service.submit(() -> serve(socket, size));
             }
-        } catch (SocketException e) {
+        } catch (IOException e) {
             System.err.println("Error: " + e.getMessage());
         }
     }
 
+    /**
+     * Answers requests until the socket is closed. The packet and its buffer are allocated once:
+     * requests are received right after the {@code "Hello, "} prefix and the same bytes are sent back.
+     */
+    private void serve(DatagramSocket socket, int size) {
+        byte[] buffer = new byte[size];
+        System.arraycopy(PREFIX, 0, buffer, 0, PREFIX.length);
+        DatagramPacket packet = new DatagramPacket(buffer, size);
+        while (!Thread.interrupted() && !socket.isClosed()) {
+            packet.setData(buffer, PREFIX.length, size - PREFIX.length);
+            try {
+                socket.receive(packet);
+                packet.setData(buffer, 0, PREFIX.length + packet.getLength());
+                socket.send(packet);
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public void close() {
-        socket.close();
+        for (DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+        }
         general.close(service);
     }
 }
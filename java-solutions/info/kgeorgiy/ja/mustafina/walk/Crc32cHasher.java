@@ -0,0 +1,25 @@
+package info.kgeorgiy.ja.mustafina.walk;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+class Crc32cHasher implements Hasher {
+    private final CRC32C crc = new CRC32C();
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        crc.update(buffer);
+    }
+
+    @Override
+    public byte[] digest() {
+        int value = (int) crc.getValue();
+        crc.reset();
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    @Override
+    public int length() {
+        return Integer.BYTES;
+    }
+}
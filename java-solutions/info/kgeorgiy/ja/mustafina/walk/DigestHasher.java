@@ -0,0 +1,27 @@
+package info.kgeorgiy.ja.mustafina.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+class DigestHasher implements Hasher {
+    private final MessageDigest md;
+
+    public DigestHasher(MessageDigest md) {
+        this.md = md;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        md.update(buffer);
+    }
+
+    @Override
+    public byte[] digest() {
+        return md.digest();
+    }
+
+    @Override
+    public int length() {
+        return md.getDigestLength();
+    }
+}
@@ -0,0 +1,129 @@
+package info.kgeorgiy.ja.mustafina.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Supplier;
+
+/**
+ * Computes hex hashes of files with the chosen algorithm. Safe to use from several threads:
+ * every thread gets its own {@link Hasher} and read buffer.
+ */
+public class FileHasher {
+    public static Integer DIRECT_BUFFER_SIZE = 1 << 16;
+    public static Long MAP_THRESHOLD = 1L << 24;
+    private static final long MAP_CHUNK = 1L << 30;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE));
+
+    private final ThreadLocal<Hasher> hasher;
+    private final HashIndex index;
+    private final String error;
+
+    /**
+     * @param factory hashers of the chosen algorithm, see {@link Hasher#factory(String)}.
+     * @param index   digest cache for this algorithm, may be {@code null}.
+     */
+    public FileHasher(Supplier<Hasher> factory, HashIndex index) {
+        this.hasher = ThreadLocal.withInitial(factory);
+        this.index = index;
+        this.error = "0".repeat(2 * hasher.get().length());
+    }
+
+    /**
+     * Returns hash printed instead of hash of unreadable file.
+     */
+    public String error() {
+        return error;
+    }
+
+    /**
+     * Returns hex hash of file {@code path}, taking it from index if the file hasn't changed.
+     */
+    public String hash(String path) {
+        Path filePath;
+        try {
+            filePath = Path.of(path);
+        } catch (InvalidPathException e) {
+            return error;
+        }
+        if (Files.notExists(filePath)) {
+            return error;
+        }
+        BasicFileAttributes attributes = null;
+        if (index != null) {
+            try {
+                attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+                String cached = index.get(filePath, attributes);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException e) {
+                return error;
+            }
+        }
+        Hasher hasher = this.hasher.get();
+        String result;
+        try {
+            update(hasher, filePath);
+            result = toHex(hasher.digest());
+        } catch (IllegalArgumentException | IOException e) {
+            hasher.digest();
+            return error;
+        }
+        if (attributes != null) {
+            try {
+                index.put(filePath, attributes, result);
+            } catch (IOException e) {
+                System.err.println("Failed to write index" + " " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static String toHex(byte[] hash) {
+        char[] chars = new char[2 * hash.length];
+        for (int i = 0; i < hash.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Feeds file contents to {@code hasher} without copying them to the heap. Files of at least
+     * {@code MAP_THRESHOLD} bytes are memory-mapped, smaller ones are read through a direct buffer
+     * reused by the current thread; files up to {@code SIZE_OF_BUFFER} bytes take a single read.
+     */
+    private static void update(Hasher hasher, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_CHUNK) {
+                    hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, size - position)));
+                }
+                return;
+            }
+            ByteBuffer buffer = BUFFER.get().clear();
+            if (size > 0 && size <= Walk.SIZE_OF_BUFFER) {
+                int n = channel.read(buffer);
+                if (n == -1) {
+                    return;
+                }
+                hasher.update(buffer.flip());
+                if (n == size) {
+                    return;
+                }
+            }
+            while (channel.read(buffer.clear()) != -1) {
+                hasher.update(buffer.flip());
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package info.kgeorgiy.ja.mustafina.walk;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent digest cache keyed by absolute path, size, modification time and file key.
+ * An index is bound to one hash algorithm, an index of another algorithm is discarded on open.
+ * <p>
+ * The index is an append-only binary log which is mapped and replayed on open; later records
+ * override earlier ones. The log is compacted on {@link #close()} when most of its records are stale.
+ */
+public class HashIndex implements Closeable {
+    private static final int MAGIC = 0x57484958;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int COMPACTION_SLACK = 1024;
+    private static final long RACY_INTERVAL = TimeUnit.SECONDS.toNanos(2);
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path file;
+    private final String algorithm;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final DataOutputStream log;
+    private int records;
+
+    private record Entry(long size, long modified, String key, byte[] hash) {
+        public boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified == modifiedOf(attributes)
+                    && Objects.equals(key, keyOf(attributes));
+        }
+    }
+
+    public HashIndex(Path file, String algorithm) throws IOException {
+        this.file = file;
+        this.algorithm = algorithm.toLowerCase(Locale.ROOT);
+        long valid = Files.exists(file) ? load() : 0;
+        if (valid == 0) {
+            try (DataOutputStream header = new DataOutputStream(Files.newOutputStream(file))) {
+                writeHeader(header);
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        log = open();
+    }
+
+    /**
+     * Replays the log and returns length of its valid prefix, or {@code 0} if the log is empty
+     * or belongs to another version or algorithm.
+     *
+     * @throws IOException if the file is not an index, so that it is not overwritten.
+     */
+    private long load() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return 0;
+            }
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a hash index " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a hash index " + file);
+            }
+            int valid;
+            try {
+                if (buffer.getInt() != VERSION || !readString(buffer).equals(algorithm)) {
+                    return 0;
+                }
+                valid = buffer.position();
+            } catch (BufferUnderflowException e) {
+                return 0;
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    String path = readString(buffer);
+                    long size = buffer.getLong();
+                    long modified = buffer.getLong();
+                    String key = readString(buffer);
+                    byte[] hash = new byte[Byte.toUnsignedInt(buffer.get())];
+                    buffer.get(hash);
+                    entries.put(path, new Entry(size, modified, key.isEmpty() ? null : key, hash));
+                    records++;
+                    valid = buffer.position();
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                // torn tail after a crash, drop it
+            }
+            return valid;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private DataOutputStream open() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.APPEND)));
+    }
+
+    /**
+     * Returns cached hex digest of {@code path} or {@code null} if the file is unknown or has changed.
+     */
+    public String get(Path path, BasicFileAttributes attributes) {
+        Entry entry = entries.get(name(path));
+        return entry != null && entry.matches(attributes) ? HEX.formatHex(entry.hash()) : null;
+    }
+
+    /**
+     * Remembers hex digest of {@code path}. Files modified just now are skipped, since
+     * a write within the same timestamp tick would go unnoticed.
+     */
+    public void put(Path path, BasicFileAttributes attributes, String hash) throws IOException {
+        long modified = modifiedOf(attributes);
+        if (System.currentTimeMillis() * 1_000_000 - modified < RACY_INTERVAL) {
+            return;
+        }
+        String name = name(path);
+        Entry old = entries.get(name);
+        if (old != null && old.matches(attributes)) {
+            return;
+        }
+        Entry entry = new Entry(attributes.size(), modified, keyOf(attributes), HEX.parseHex(hash));
+        synchronized (this) {
+            entries.put(name, entry);
+            write(log, name, entry);
+            records++;
+        }
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, algorithm);
+    }
+
+    private static void write(DataOutputStream out, String name, Entry entry) throws IOException {
+        writeString(out, name);
+        out.writeLong(entry.size());
+        out.writeLong(entry.modified());
+        writeString(out, entry.key() == null ? "" : entry.key());
+        out.writeByte(entry.hash().length);
+        out.write(entry.hash());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IOException("Path is too long for index " + value);
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String name(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static long modifiedOf(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String keyOf(BasicFileAttributes attributes) {
+        return attributes.fileKey() == null ? null : attributes.fileKey().toString();
+    }
+
+    /**
+     * Flushes the log, rewriting it with live entries only if it has grown twice as large.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+        if (records <= 2 * entries.size() + COMPACTION_SLACK) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            writeHeader(out);
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                write(out, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = entries.size();
+    }
+}
@@ -0,0 +1,51 @@
+package info.kgeorgiy.ja.mustafina.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Incremental hash function. Instances are not thread-safe and are meant to be reused.
+ */
+public interface Hasher {
+    /**
+     * Consumes remaining bytes of {@code buffer}.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Returns hash of consumed bytes and resets the hasher.
+     */
+    byte[] digest();
+
+    /**
+     * Returns length of the hash in bytes.
+     */
+    int length();
+
+    /**
+     * Returns factory of hashers for {@code algorithm}: {@code xxhash64}, {@code crc32c}
+     * or any {@link MessageDigest} algorithm, e.g. {@code SHA-1} or {@code SHA-256}.
+     *
+     * @throws NoSuchAlgorithmException if algorithm is not supported.
+     */
+    static Supplier<Hasher> factory(String algorithm) throws NoSuchAlgorithmException {
+        switch (algorithm.toLowerCase(Locale.ROOT)) {
+            case "xxhash64":
+                return XxHash64::new;
+            case "crc32c":
+                return Crc32cHasher::new;
+            default:
+                MessageDigest.getInstance(algorithm);
+                return () -> {
+                    try {
+                        return new DigestHasher(MessageDigest.getInstance(algorithm));
+                    } catch (NoSuchAlgorithmException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package info.kgeorgiy.ja.mustafina.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * {@link Walk} which also hashes every file under listed directories.
+ * <p>
+ * Each directory is listed by its own fork-join task, subdirectories are forked as soon as they are met,
+ * so results are streamed to the output without collecting the file tree first.
+ * Lines produced for one input line precede lines of the next one.
+ */
+public class RecursiveWalk {
+    /**
+     * Usage: {@code RecursiveWalk <input> <output> [-threads <n>] [-index <file>] [-algorithm <name>]}.
+     */
+    public static void main(String[] args) {
+        Walk.run(args, true);
+    }
+
+    /**
+     * Walks listed paths on {@code threads} workers. Plain files are hashed with at most
+     * {@code threads * TASKS_PER_THREAD} of them in flight; pending files are written out
+     * before a directory is walked, keeping output in input order.
+     */
+    static void walk(BufferedReader reader, BufferedWriter writer, int threads, FileHasher hasher) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Queue<FileTask> files = new ArrayDeque<>();
+        int capacity = threads * Walk.TASKS_PER_THREAD;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isDirectory(line)) {
+                    flush(writer, files, 0);
+                    pool.invoke(new DirectoryTask(Path.of(line), writer, hasher));
+                } else {
+                    flush(writer, files, capacity - 1);
+                    String file = line;
+                    files.add(new FileTask(file, pool.submit(() -> hasher.hash(file))));
+                }
+            }
+            flush(writer, files, 0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static boolean isDirectory(String line) {
+        try {
+            return Files.isDirectory(Path.of(line));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private record FileTask(String path, ForkJoinTask<String> hash) {
+    }
+
+    /**
+     * Writes hashes of the oldest pending files until at most {@code keep} of them are left.
+     */
+    private static void flush(BufferedWriter writer, Queue<FileTask> files, int keep) {
+        while (files.size() > keep) {
+            FileTask task = files.poll();
+            write(writer, task.hash().join(), task.path());
+        }
+    }
+
+    private static void write(BufferedWriter writer, String result, String path) {
+        synchronized (writer) {
+            Walk.write(writer, result, path);
+        }
+    }
+
+    private static class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path directory;
+        private final transient BufferedWriter writer;
+        private final transient FileHasher hasher;
+
+        public DirectoryTask(Path directory, BufferedWriter writer, FileHasher hasher) {
+            this.directory = directory;
+            this.writer = writer;
+            this.hasher = hasher;
+        }
+
+        @Override
+        protected void compute() {
+            List<ForkJoinTask<Void>> subtasks = new ArrayList<>();
+            try {
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isDirectory()) {
+                            if (!file.equals(directory)) {
+                                subtasks.add(new DirectoryTask(file, writer, hasher).fork());
+                            }
+                        } else {
+                            write(writer, hasher.hash(file.toString()), file.toString());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        write(writer, hasher.error(), file.toString());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                write(writer, hasher.error(), directory.toString());
+            }
+            for (ForkJoinTask<Void> subtask : subtasks) {
+                subtask.join();
+            }
+        }
+    }
+}
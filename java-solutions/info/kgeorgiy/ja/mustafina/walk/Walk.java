@@ -5,20 +5,53 @@ import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 
 public class Walk {
     public static String ERROR_WHILE_READING_FILE = "0".repeat(40);
     public static Integer SIZE_OF_BUFFER = 8192;
+    public static Integer TASKS_PER_THREAD = 64;
+    public static String DEFAULT_ALGORITHM = "SHA-1";
+    private static final Set<String> OPTIONS = Set.of("-threads", "-index", "-algorithm");
 
+    /**
+     * Usage: {@code Walk <input> <output> [-threads <n>] [-index <file>] [-algorithm <name>]},
+     * see {@link Hasher#factory(String)} for supported algorithms.
+     */
     public static void main(String[] args) {
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
+        run(args, false);
+    }
+
+    static void run(String[] args, boolean recursive) {
+        if (args == null || args.length < 2 || args.length % 2 != 0 || Arrays.stream(args).anyMatch(Objects::isNull)) {
+            System.err.println("Invalid arguments");
+            return;
+        }
+
+        Map<String, String> options = new HashMap<>();
+        for (int i = 2; i < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        if (!OPTIONS.containsAll(options.keySet())) {
             System.err.println("Invalid arguments");
             return;
         }
 
+        int threads;
+        try {
+            threads = Integer.parseInt(options.getOrDefault("-threads", "1"));
+        } catch (NumberFormatException e) {
+            threads = 0;
+        }
+        if (threads <= 0) {
+            System.err.println("Invalid number of threads " + options.get("-threads"));
+            return;
+        }
+
         if (checkPath(args[0], "input")) {
             return;
         }
@@ -37,47 +70,76 @@ public class Walk {
             }
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]))) {
+        String indexFile = options.get("-index");
+        if (indexFile != null && checkPath(indexFile, "index")) {
+            return;
+        }
+
+        String algorithm = options.getOrDefault("-algorithm", DEFAULT_ALGORITHM);
+        Supplier<Hasher> factory;
+        try {
+            factory = Hasher.factory(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            System.err.println("Failed to find algorithm" + " " + e.getMessage());
+            return;
+        }
+
+        try (HashIndex index = indexFile == null ? null : new HashIndex(Path.of(indexFile), algorithm);
+             BufferedReader reader = Files.newBufferedReader(Path.of(args[0]))) {
+            FileHasher hasher = new FileHasher(factory, index);
             try (BufferedWriter writer = Files.newBufferedWriter(Path.of(args[1]))) {
-                String path;
-                while ((path = reader.readLine()) != null) {
-                    StringBuilder result = new StringBuilder();
-                    MessageDigest md = MessageDigest.getInstance("SHA-1");
-                    Path filePath;
-                    try {
-                        filePath = Path.of(path);
-                    } catch (InvalidPathException e) {
-                        result.append(ERROR_WHILE_READING_FILE);
-                        write(writer, result, path);
-                        continue;
-                    }
-                    if (Files.notExists(filePath)) {
-                        result.append(ERROR_WHILE_READING_FILE);
-                        write(writer, result, path);
-                        continue;
+                if (recursive) {
+                    RecursiveWalk.walk(reader, writer, threads, hasher);
+                } else if (threads == 1) {
+                    String path;
+                    while ((path = reader.readLine()) != null) {
+                        write(writer, hasher.hash(path), path);
                     }
-                    try (InputStream inputStream = Files.newInputStream(Path.of(path))) {
-                        int n = 0;
-                        byte[] buffer = new byte[SIZE_OF_BUFFER];
-                        while (n != -1) {
-                            n = inputStream.read(buffer);
-                            if (n > 0) {
-                                md.update(buffer, 0, n);
-                            }
-                        }
-                        for (byte b : md.digest()) {
-                            result.append(String.format("%02x", b));
-                        }
-                    } catch (IllegalArgumentException | IOException e) {
-                        result.append(ERROR_WHILE_READING_FILE);
-                    }
-                    write(writer, result, path);
+                } else {
+                    parallelWalk(reader, writer, threads, hasher);
                 }
             }
         } catch (IOException e) {
             System.err.println("Input exception" + " " + e.getMessage());
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("Failed to find algorithm" + " " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while hashing" + " " + e.getMessage());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hashes files listed by {@code reader} on {@code threads} workers. At most
+     * {@code threads * TASKS_PER_THREAD} lines are in flight, results are written in input order.
+     */
+    private static void parallelWalk(BufferedReader reader, BufferedWriter writer, int threads, FileHasher hasher)
+            throws IOException, InterruptedException {
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        Queue<Task> window = new ArrayDeque<>();
+        int capacity = threads * TASKS_PER_THREAD;
+        try {
+            String path;
+            while ((path = reader.readLine()) != null) {
+                if (window.size() == capacity) {
+                    window.poll().write(writer, hasher);
+                }
+                String finalPath = path;
+                window.add(new Task(finalPath, service.submit(() -> hasher.hash(finalPath))));
+            }
+            while (!window.isEmpty()) {
+                window.poll().write(writer, hasher);
+            }
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    private record Task(String path, Future<String> hash) {
+        public void write(BufferedWriter writer, FileHasher hasher) throws InterruptedException {
+            try {
+                Walk.write(writer, hash.get(), path);
+            } catch (ExecutionException e) {
+                Walk.write(writer, hasher.error(), path);
+            }
         }
     }
 
@@ -92,7 +154,7 @@ public class Walk {
         return false;
     }
 
-    public static void write(BufferedWriter writer, StringBuilder result, String path) {
+    public static void write(BufferedWriter writer, String result, String path) {
         try {
             writer.write(result + " " + path);
             writer.newLine();
@@ -101,4 +163,3 @@ public class Walk {
         }
     }
 }
-
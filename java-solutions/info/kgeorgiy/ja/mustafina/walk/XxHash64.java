@@ -0,0 +1,108 @@
+package info.kgeorgiy.ja.mustafina.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming XXH64 with zero seed. Digest is the big-endian representation of the 64-bit hash.
+ */
+class XxHash64 implements Hasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer memory = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+
+    public XxHash64() {
+        reset();
+    }
+
+    private void reset() {
+        v1 = PRIME_1 + PRIME_2;
+        v2 = PRIME_2;
+        v3 = 0;
+        v4 = -PRIME_1;
+        total = 0;
+        memory.clear();
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        total += buffer.remaining();
+        if (memory.position() > 0) {
+            int n = Math.min(memory.remaining(), buffer.remaining());
+            memory.put(memory.position(), buffer, buffer.position(), n).position(memory.position() + n);
+            buffer.position(buffer.position() + n);
+            if (memory.hasRemaining()) {
+                buffer.order(order);
+                return;
+            }
+            stripe(memory.flip());
+            memory.clear();
+        }
+        while (buffer.remaining() >= STRIPE) {
+            stripe(buffer);
+        }
+        memory.put(buffer);
+        buffer.order(order);
+    }
+
+    private void stripe(ByteBuffer buffer) {
+        v1 = round(v1, buffer.getLong());
+        v2 = round(v2, buffer.getLong());
+        v3 = round(v3, buffer.getLong());
+        v4 = round(v4, buffer.getLong());
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long merge(long acc, long value) {
+        return (acc ^ round(0, value)) * PRIME_1 + PRIME_4;
+    }
+
+    @Override
+    public byte[] digest() {
+        long h;
+        if (total >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(merge(merge(merge(h, v1), v2), v3), v4);
+        } else {
+            h = PRIME_5;
+        }
+        h += total;
+        memory.flip();
+        while (memory.remaining() >= Long.BYTES) {
+            h = Long.rotateLeft(h ^ round(0, memory.getLong()), 27) * PRIME_1 + PRIME_4;
+        }
+        if (memory.remaining() >= Integer.BYTES) {
+            h = Long.rotateLeft(h ^ (Integer.toUnsignedLong(memory.getInt()) * PRIME_1), 23) * PRIME_2 + PRIME_3;
+        }
+        while (memory.hasRemaining()) {
+            h = Long.rotateLeft(h ^ (Byte.toUnsignedLong(memory.get()) * PRIME_5), 11) * PRIME_1;
+        }
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        h ^= h >>> 29;
+        h *= PRIME_3;
+        h ^= h >>> 32;
+        reset();
+        return ByteBuffer.allocate(Long.BYTES).putLong(h).array();
+    }
+
+    @Override
+    public int length() {
+        return Long.BYTES;
+    }
+}
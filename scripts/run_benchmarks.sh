@@ -0,0 +1,3 @@
+mvn -f ../benchmarks/pom.xml -q package -DskipTests
+mkdir -p ../benchmarks/results
+java -cp "../benchmarks/target/benchmarks.jar:../../java-advanced-2022/artifacts/*" org.openjdk.jmh.Main -rf json -rff "../benchmarks/results/$(git rev-parse --short HEAD).json" "$@"